@@ -0,0 +1,67 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response body serialization for a single product and a product page, using an ObjectMapper
+ * built the way Spring MVC builds its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    @Param({"20"})
+    public int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Product product;
+    private Page<Product> page;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("Electronics");
+        List<Product> products = new ArrayList<>(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            Product p = new Product();
+            p.setId(id);
+            p.setName("Product " + id);
+            p.setDescription("A reasonably long product description used to size the payload like real catalog data.");
+            p.setImageUrl("/uploads/product-" + id + ".png");
+            p.setPrice(new BigDecimal("19.99"));
+            p.setStock(100);
+            p.setCategory(category);
+            products.add(p);
+        }
+        product = products.get(0);
+        page = new PageImpl<>(products, PageRequest.of(0, pageSize), 1000);
+    }
+
+    @Benchmark
+    public byte[] product() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] productPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of turning a bearer token into an Authentication, with and without the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+    private JwtAuthenticationCache authenticationCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JwtUtil jwtUtil = new JwtUtil();
+        setField(jwtUtil, "secret", "secret123");
+        setField(jwtUtil, "expirationMs", 900000L);
+        authenticationCache = new JwtAuthenticationCache(jwtUtil, 10000, 300);
+        token = jwtUtil.generateToken(1L, "bench@example.com", "USER");
+    }
+
+    @Benchmark
+    public Authentication uncached() {
+        return authenticationCache.authenticateUncached(token);
+    }
+
+    @Benchmark
+    public Authentication cached() {
+        return authenticationCache.authenticate(token);
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
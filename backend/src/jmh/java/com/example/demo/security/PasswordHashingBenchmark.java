@@ -0,0 +1,65 @@
+package com.example.demo.security;
+
+import com.example.demo.exception.ServiceBusyException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login password checks per second through PasswordHasher, as the login endpoint makes them: eight caller
+ * threads against a hashing pool of two, so callers queue as in a login burst and throughput is capped by
+ * the pool rather than the callers. Checks refused with ServiceBusyException (queue full, or waited past
+ * max-wait-ms) are counted as "rejected" instead of failing the run; "accepted" is what the pool got through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(PasswordHashingBenchmark.CALLERS)
+public class PasswordHashingBenchmark {
+    static final int POOL_SIZE = 2;
+    static final int CALLERS = 8;
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"8", "10", "12"})
+    public int cost;
+
+    // Below the number of callers, so some checks are refused; and the default
+    @Param({"4", "64"})
+    public int queueCapacity;
+
+    private PasswordHasher hasher;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        hasher = new PasswordHasher(cost, POOL_SIZE, queueCapacity, 2000, 2);
+        hash = hasher.encode(PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hasher.shutdown();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+        public long accepted;
+        public long rejected;
+    }
+
+    @Benchmark
+    public boolean loginCheck(Outcomes outcomes) {
+        try {
+            boolean matched = hasher.matches(PASSWORD, hash);
+            outcomes.accepted++;
+            return matched;
+        } catch (ServiceBusyException e) {
+            outcomes.rejected++;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CartDTO;
+import com.example.demo.dto.CartItemResponseDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the cart response from projected lines: BigDecimal line totals, subtotal and stock flags.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartMappingBenchmark {
+    @Param({"10", "50"})
+    public int cartSize;
+
+    private BigDecimal price;
+
+    @Setup
+    public void setUp() {
+        price = new BigDecimal("19.99");
+    }
+
+    @Benchmark
+    public CartDTO toCart() {
+        List<CartItemResponseDTO> lines = new ArrayList<>(cartSize);
+        for (long id = 1; id <= cartSize; id++) {
+            lines.add(new CartItemResponseDTO(id, id, "Product " + id, "/uploads/product-" + id + ".png", price, 5, 2));
+        }
+        return new CartDTO(lines);
+    }
+}
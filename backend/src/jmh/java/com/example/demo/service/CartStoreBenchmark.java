@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.entity.CartItem;
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.User;
+import com.example.demo.repository.CartItemRepository;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cart quantity changes per second against an in-memory H2 database, through the JPA path (one
+ * transaction per change) and the write-behind cart store (changes coalesced and written in batches).
+ * Each thread is its own shopper changing quantities in a ten-line cart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(4)
+@Fork(1)
+public class CartStoreBenchmark {
+    private static final int CART_LINES = 10;
+
+    @Param({"jpa", "write-behind"})
+    public String mode;
+
+    ConfigurableApplicationContext context;
+    CartService cartService;
+    WriteBehindCartService writeBehindCartService;
+    List<Long> productIds = new ArrayList<>();
+    final AtomicInteger shoppers = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(DemoApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:cart-store;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=warn",
+                        "--app.cart.write-behind.enabled=" + mode.equals("write-behind"));
+        cartService = context.getBean(CartService.class);
+        writeBehindCartService = context.getBeanProvider(WriteBehindCartService.class).getIfAvailable();
+        Category category = new Category();
+        category.setName("Benchmark");
+        context.getBean(CategoryRepository.class).save(category);
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        for (int i = 0; i < CART_LINES; i++) {
+            Product product = new Product();
+            product.setName("Benchmark product " + i);
+            product.setPrice(new BigDecimal("19.99"));
+            product.setStock(1_000_000);
+            product.setCategory(category);
+            productIds.add(productRepository.save(product).getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Shopper {
+        @Setup
+        public void setUp(CartStoreBenchmark benchmark) {
+            User user = new User();
+            user.setEmail("shopper" + benchmark.shoppers.incrementAndGet() + "@example.com");
+            user.setPassword("x");
+            user.setRole("USER");
+            user.setName("Shopper");
+            user = benchmark.context.getBean(UserRepository.class).save(user);
+            ProductRepository productRepository = benchmark.context.getBean(ProductRepository.class);
+            CartItemRepository cartItemRepository = benchmark.context.getBean(CartItemRepository.class);
+            for (Long productId : benchmark.productIds) {
+                CartItem item = new CartItem();
+                item.setUser(user);
+                item.setProduct(productRepository.getReferenceById(productId));
+                item.setQuantity(1);
+                cartItemRepository.save(item);
+            }
+            AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getEmail(), List.of());
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+        }
+    }
+
+    @Benchmark
+    public void updateQuantity(Shopper shopper) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long productId = productIds.get(random.nextInt(CART_LINES));
+        int quantity = 1 + random.nextInt(5);
+        if (writeBehindCartService != null) {
+            writeBehindCartService.updateCartItem(productId, quantity);
+        } else {
+            cartService.updateCartItemByEmailAndProductId(productId, quantity);
+        }
+    }
+}
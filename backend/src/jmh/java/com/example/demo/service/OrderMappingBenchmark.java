@@ -0,0 +1,72 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OrderResponseDTO;
+import com.example.demo.entity.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity-to-OrderResponseDTO mapping for an order history page, with entities already in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderMappingBenchmark {
+    @Param({"20", "100"})
+    public int orderCount;
+
+    @Param({"5"})
+    public int itemsPerOrder;
+
+    private OrderService orderService;
+    private List<Order> orders;
+
+    @Setup
+    public void setUp() {
+        orderService = new OrderService();
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("bench@example.com");
+        orders = new ArrayList<>(orderCount);
+        long itemId = 1;
+        for (long id = 1; id <= orderCount; id++) {
+            Order order = new Order();
+            order.setId(id);
+            order.setUser(user);
+            order.setStatus("PENDING");
+            order.setShippingAddress("1 Bench Street");
+            order.setTotalAmount(new BigDecimal("99.95"));
+            order.setCreatedAt(Instant.now());
+            List<OrderItem> items = new ArrayList<>(itemsPerOrder);
+            for (int i = 0; i < itemsPerOrder; i++) {
+                Product product = new Product();
+                product.setId((long) i + 1);
+                product.setName("Product " + i);
+                product.setImageUrl("/uploads/product-" + i + ".png");
+                product.setPrice(new BigDecimal("19.99"));
+                OrderItem item = new OrderItem();
+                item.setId(itemId++);
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(1);
+                item.setPrice(product.getPrice());
+                items.add(item);
+            }
+            order.setItems(items);
+            orders.add(order);
+        }
+    }
+
+    @Benchmark
+    public List<OrderResponseDTO> toDTOs() {
+        return orderService.toDTOs(orders);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+
+import javax.cache.spi.CachingProvider;
+import java.util.Map;
+
+/**
+ * Second-level cache region factory backed by Caffeine through JCache. Each session factory gets its
+ * own provider and so its own cache manager; the shared JCache registry would otherwise let two
+ * persistence units in one JVM (as in the test suite) see each other's entries under equal ids.
+ */
+public class CaffeineJCacheRegionFactory extends JCacheRegionFactory {
+    @Override
+    protected CachingProvider getCachingProvider(Map<String, Object> properties) {
+        return new CaffeineCachingProvider();
+    }
+}
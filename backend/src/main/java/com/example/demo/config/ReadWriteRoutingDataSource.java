@@ -0,0 +1,96 @@
+package com.example.demo.config;
+
+import com.example.demo.security.AuthenticatedUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary.
+ * A user whose write committed within the read-your-writes window keeps reading from the primary,
+ * so replication lag never hides their own order or cart change from them.
+ * Must sit behind a LazyConnectionDataSourceProxy so the route is chosen once the transaction is set up.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    public enum Route { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    // user id -> present while that user's last write is younger than the window
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration readYourWritesWindow) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+    }
+
+    // Runs work against the primary even inside read-only transactions, for reads that feed a cache or a write
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = FORCE_PRIMARY.get();
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                FORCE_PRIMARY.remove();
+            } else {
+                FORCE_PRIMARY.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Marks these users as writers once the current transaction commits (at once outside a transaction).
+     * For writes made on their behalf from threads with no signed-in user, such as the order pipeline.
+     */
+    public void markRecentWriters(Collection<Long> userIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Long> writers = List.copyOf(userIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    writers.forEach(userId -> recentWriters.put(userId, Boolean.TRUE));
+                }
+            });
+        } else {
+            userIds.forEach(userId -> recentWriters.put(userId, Boolean.TRUE));
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute();
+    }
+
+    Route currentRoute() {
+        Long userId = AuthenticatedUser.currentUserId();
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (FORCE_PRIMARY.get() != null || (userId != null && recentWriters.getIfPresent(userId) != null)) {
+                return Route.PRIMARY;
+            }
+            return Route.REPLICA;
+        }
+        if (userId != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentWriters.put(userId, Boolean.TRUE);
+                }
+            });
+        }
+        return Route.PRIMARY;
+    }
+}
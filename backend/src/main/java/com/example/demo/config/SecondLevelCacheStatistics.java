@@ -0,0 +1,75 @@
+package com.example.demo.config;
+
+import com.example.demo.dto.CacheStatsDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Size, hit ratio and evictions of each Hibernate second-level cache region, read from the Caffeine
+ * cache behind it. Exported as cache_* metrics tagged cache="hibernate.&lt;region&gt;".
+ */
+@Component
+public class SecondLevelCacheStatistics implements MeterBinder {
+    private final CacheManager cacheManager;
+
+    public SecondLevelCacheStatistics(EntityManagerFactory entityManagerFactory) {
+        this.cacheManager = cacheManager(entityManagerFactory);
+    }
+
+    /** The Caffeine cache behind a region, or null when the second-level cache is switched off. */
+    public static Cache<?, ?> region(EntityManagerFactory entityManagerFactory, String name) {
+        CacheManager cacheManager = cacheManager(entityManagerFactory);
+        javax.cache.Cache<?, ?> cache = cacheManager != null ? cacheManager.getCache(name) : null;
+        return cache != null ? cache.unwrap(Cache.class) : null;
+    }
+
+    public static CacheStatsDTO toStats(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        CacheStatsDTO dto = new CacheStatsDTO();
+        dto.setSize(cache.estimatedSize());
+        dto.setHits(stats.hitCount());
+        dto.setMisses(stats.missCount());
+        dto.setEvictions(stats.evictionCount());
+        dto.setHitRatio(stats.hitRate());
+        return dto;
+    }
+
+    public Map<String, CacheStatsDTO> getStats() {
+        Map<String, CacheStatsDTO> regions = new TreeMap<>();
+        forEachRegion((name, cache) -> regions.put(name, toStats(cache)));
+        return regions;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        forEachRegion((name, cache) -> CaffeineCacheMetrics.monitor(registry, cache, "hibernate." + name));
+    }
+
+    // Null when the second-level cache is switched off
+    private static CacheManager cacheManager(EntityManagerFactory entityManagerFactory) {
+        RegionFactory regionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache().getRegionFactory();
+        return regionFactory instanceof JCacheRegionFactory jcache ? jcache.getCacheManager() : null;
+    }
+
+    private void forEachRegion(BiConsumer<String, Cache<?, ?>> visitor) {
+        if (cacheManager == null) {
+            return;
+        }
+        for (String name : cacheManager.getCacheNames()) {
+            visitor.accept(name, cacheManager.getCache(name).unwrap(Cache.class));
+        }
+    }
+}
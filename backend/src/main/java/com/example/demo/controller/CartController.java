@@ -1,8 +1,10 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CartDTO;
 import com.example.demo.dto.CartItemRequestDTO;
-import com.example.demo.dto.CartItemResponseDTO;
+import com.example.demo.dto.CartOperationDTO;
 import com.example.demo.service.CartService;
+import com.example.demo.service.WriteBehindCartService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -16,27 +18,50 @@ import java.util.List;
 public class CartController {
     @Autowired
     private CartService cartService;
+    // Present only when app.cart.write-behind.enabled is set; carts are then served from memory
+    @Autowired(required = false)
+    private WriteBehindCartService writeBehindCartService;
 
     @PostMapping("/add")
     public ResponseEntity<?> addItemToCart(@RequestBody CartItemRequestDTO request) {
-        cartService.addItemToCart(request);
+        if (writeBehindCartService != null) {
+            writeBehindCartService.addItemToCart(request.getProductId(), request.getQuantity());
+        } else {
+            cartService.addItemToCart(request);
+        }
         return ResponseEntity.ok().build();
     }
 
     @GetMapping
-    public ResponseEntity<List<CartItemResponseDTO>> getCartItems() {
-        return ResponseEntity.ok(cartService.getCartItems());
+    public ResponseEntity<CartDTO> getCart() {
+        return ResponseEntity.ok(writeBehindCartService != null ? writeBehindCartService.getCart() : cartService.getCart());
+    }
+
+    // Several adds, quantity changes and removals in one request and one transaction; returns the updated cart
+    @PatchMapping
+    public ResponseEntity<CartDTO> applyOperations(@RequestBody List<CartOperationDTO> operations) {
+        return ResponseEntity.ok(writeBehindCartService != null
+                ? writeBehindCartService.applyOperations(operations)
+                : cartService.applyOperations(operations));
     }
 
     @PutMapping("/update")
     public ResponseEntity<?> updateCartItem(@RequestBody CartItemRequestDTO request) {
-        cartService.updateCartItemByEmailAndProductId(request.getProductId(), request.getQuantity());
+        if (writeBehindCartService != null) {
+            writeBehindCartService.updateCartItem(request.getProductId(), request.getQuantity());
+        } else {
+            cartService.updateCartItemByEmailAndProductId(request.getProductId(), request.getQuantity());
+        }
         return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/remove/{productId}")
     public ResponseEntity<?> removeCartItem(@PathVariable Long productId) {
-        cartService.removeCartItem(productId);
+        if (writeBehindCartService != null) {
+            writeBehindCartService.removeCartItem(productId);
+        } else {
+            cartService.removeCartItem(productId);
+        }
         return ResponseEntity.ok().build();
     }
 }
@@ -1,18 +1,32 @@
 package com.example.demo.controller;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
 public class HealthCheckController {
+    @Autowired
+    private HealthEndpoint healthEndpoint;
+
+    // Backed by the actuator health checks (database included); details stay on /actuator/health
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> healthCheck() {
+        Status status = healthEndpoint.health().getStatus();
         Map<String, String> response = new HashMap<>();
-        response.put("status", "ok");
-        return ResponseEntity.ok(response);
+        if (Status.UP.equals(status)) {
+            response.put("status", "ok");
+            return ResponseEntity.ok(response);
+        }
+        response.put("status", status.getCode().toLowerCase(Locale.ROOT));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
     }
 }
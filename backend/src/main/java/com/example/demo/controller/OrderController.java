@@ -1,34 +1,131 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.OrderItemDTO;
+import com.example.demo.dto.OrderPageDTO;
 import com.example.demo.dto.OrderResponseDTO;
+import com.example.demo.dto.OrderTicketDTO;
 import com.example.demo.dto.PlaceOrderRequestDTO;
 import com.example.demo.dto.PlaceOrderResponseDTO;
+import com.example.demo.service.AsyncOrderService;
 import com.example.demo.service.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/orders")
 @PreAuthorize("isAuthenticated()")
 public class OrderController {
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final long TICKET_EVENTS_TIMEOUT_MS = 60_000;
+    private static final String CSV_HEADER = "order_id,created_at,user_email,status,total_amount,shipping_address,"
+            + "product_id,product_name,quantity,price";
+
     @Autowired
     private OrderService orderService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    // Present only when app.orders.async.enabled is set
+    @Autowired(required = false)
+    private AsyncOrderService asyncOrderService;
 
+    // With "Prefer: respond-async" (RFC 7240) and the checkout queue enabled, the order is queued and
+    // answered with 202 and a ticket to poll; otherwise it is placed before responding, as before
     @PostMapping("/place")
-    public ResponseEntity<PlaceOrderResponseDTO> placeOrder(@RequestBody PlaceOrderRequestDTO request) {
+    public ResponseEntity<?> placeOrder(@RequestBody PlaceOrderRequestDTO request,
+                                        @RequestHeader(value = "Prefer", required = false) String prefer) {
+        if (asyncOrderService != null && prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            OrderTicketDTO ticket = asyncOrderService.submit(request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/orders/tickets/" + ticket.getTicketId()))
+                    .header("Preference-Applied", RESPOND_ASYNC)
+                    .body(ticket);
+        }
         PlaceOrderResponseDTO response = orderService.placeOrderWithResponse(request);
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/tickets/{ticketId}")
+    public ResponseEntity<OrderTicketDTO> getOrderTicket(@PathVariable String ticketId) {
+        return ResponseEntity.ok(requireAsyncOrders().getTicket(ticketId));
+    }
+
+    // Server-sent events: one "order" event with the final ticket once the order is placed or refused
+    @GetMapping(value = "/tickets/{ticketId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToOrderTicket(@PathVariable String ticketId) {
+        SseEmitter emitter = new SseEmitter(TICKET_EVENTS_TIMEOUT_MS);
+        // Sent from a pool thread rather than the pipeline, so a slow client cannot stall checkout
+        requireAsyncOrders().whenDone(ticketId).thenAcceptAsync(ticket -> {
+            try {
+                emitter.send(SseEmitter.event().name("order").data(ticket, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
     @GetMapping("/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<OrderResponseDTO>> getAllOrders() {
-        List<OrderResponseDTO> orders = orderService.getAllOrdersSafe();
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<OrderPageDTO> getAllOrders(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(orderService.getAllOrdersPage(cursor, limit));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            if (csv) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            orderService.exportOrders(status, from, to, order -> {
+                try {
+                    if (csv) {
+                        writeCsvRows(writer, order);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(order));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType(ProductController.NDJSON_VALUE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
     }
 
     @GetMapping("/all/status/{status}")
@@ -45,9 +142,10 @@ public class OrderController {
     }
 
     @GetMapping("/my-orders")
-    public ResponseEntity<List<OrderResponseDTO>> getCurrentUserOrders() {
-        List<OrderResponseDTO> orders = orderService.getCurrentUserOrdersSafe();
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<OrderPageDTO> getCurrentUserOrders(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(orderService.getCurrentUserOrdersPage(cursor, limit));
     }
 
     @PatchMapping("/{orderId}/cancel")
@@ -68,4 +166,39 @@ public class OrderController {
         orderService.markOrderDeliveredByUser(orderId);
         return ResponseEntity.ok().build();
     }
+
+    private AsyncOrderService requireAsyncOrders() {
+        if (asyncOrderService == null) {
+            throw new IllegalArgumentException("Asynchronous checkout is not enabled");
+        }
+        return asyncOrderService;
+    }
+
+    // One CSV line per order item; orders without items still get a line with empty item columns
+    private static void writeCsvRows(Writer writer, OrderResponseDTO order) throws IOException {
+        String orderColumns = String.join(",", csv(order.getId()), csv(order.getCreatedAt()), csv(order.getUserEmail()),
+                csv(order.getStatus()), csv(order.getTotalAmount()), csv(order.getShippingAddress()));
+        if (order.getItems().isEmpty()) {
+            writer.write(orderColumns + ",,,,\n");
+            return;
+        }
+        for (OrderItemDTO item : order.getItems()) {
+            writer.write(orderColumns);
+            writer.write(',');
+            writer.write(String.join(",", csv(item.getProductId()), csv(item.getProductName()),
+                    csv(item.getQuantity()), csv(item.getPrice())));
+            writer.write('\n');
+        }
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
 }
@@ -1,9 +1,12 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.SecondLevelCacheStatistics;
+import com.example.demo.dto.CacheStatsDTO;
 import com.example.demo.dto.ProductDTO;
 import com.example.demo.entity.Product;
 import com.example.demo.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -14,11 +17,14 @@ import java.util.HashMap;
 import java.util.Map;
 
 @RestController
+@Lazy
 @RequestMapping("/api/admin/products")
 @PreAuthorize("isAuthenticated()")
 public class ProductAdminController {
     @Autowired
     private ProductService productService;
+    @Autowired
+    private SecondLevelCacheStatistics secondLevelCacheStatistics;
 
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping(consumes = {"multipart/form-data"})
@@ -39,6 +45,19 @@ public class ProductAdminController {
         return ResponseEntity.ok(updated);
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/cache-stats")
+    public ResponseEntity<CacheStatsDTO> getCacheStats() {
+        return ResponseEntity.ok(productService.getCacheStats());
+    }
+
+    // Per-region statistics of the Hibernate second-level cache (category, product, query results)
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/entity-cache-stats")
+    public ResponseEntity<Map<String, CacheStatsDTO>> getEntityCacheStats() {
+        return ResponseEntity.ok(secondLevelCacheStatistics.getStats());
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteProduct(@PathVariable Long id) {
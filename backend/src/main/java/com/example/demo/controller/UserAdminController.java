@@ -1,9 +1,12 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CacheStatsDTO;
 import com.example.demo.dto.UserProfileDTO;
 import com.example.demo.entity.User;
+import com.example.demo.security.JwtAuthenticationCache;
 import com.example.demo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -11,11 +14,14 @@ import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
 @RestController
+@Lazy
 @RequestMapping("/api/admin/users")
 @PreAuthorize("hasRole('ADMIN')")
 public class UserAdminController {
     @Autowired
     private UserService userService;
+    @Autowired
+    private JwtAuthenticationCache authenticationCache;
 
     @GetMapping
     public ResponseEntity<List<UserProfileDTO>> getAllUsers() {
@@ -23,6 +29,11 @@ public class UserAdminController {
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping("/token-cache-stats")
+    public ResponseEntity<CacheStatsDTO> getTokenCacheStats() {
+        return ResponseEntity.ok(authenticationCache.getStats());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<UserProfileDTO> getUserById(@PathVariable Long id) {
         UserProfileDTO user = userService.getUserById(id);
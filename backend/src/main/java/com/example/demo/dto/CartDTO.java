@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+public class CartDTO {
+    private List<CartItemResponseDTO> items;
+    private BigDecimal subtotal;
+    private int totalQuantity;
+    private boolean hasOutOfStockItems;
+
+    public CartDTO() {
+    }
+
+    public CartDTO(List<CartItemResponseDTO> items) {
+        this.items = items;
+        this.subtotal = BigDecimal.ZERO;
+        for (CartItemResponseDTO item : items) {
+            subtotal = subtotal.add(item.getLineTotal());
+            totalQuantity += item.getQuantity();
+            hasOutOfStockItems |= item.isOutOfStock();
+        }
+    }
+}
@@ -2,12 +2,34 @@ package com.example.demo.dto;
 
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 @Data
 public class CartItemResponseDTO {
     private Long id;
     private Long productId;
     private String productName;
     private String productImage;
-    private double productPrice;
+    private BigDecimal productPrice;
     private int quantity;
+    private int stock;
+    private BigDecimal lineTotal;
+    private boolean outOfStock; // fewer units left than this line asks for
+
+    public CartItemResponseDTO() {
+    }
+
+    // Filled straight from the projection query in CartItemRepository.findCartLines
+    public CartItemResponseDTO(Long id, Long productId, String productName, String productImage,
+                               BigDecimal productPrice, Integer stock, Integer quantity) {
+        this.id = id;
+        this.productId = productId;
+        this.productName = productName;
+        this.productImage = productImage;
+        this.productPrice = productPrice;
+        this.quantity = quantity;
+        this.stock = stock;
+        this.lineTotal = productPrice.multiply(BigDecimal.valueOf(quantity));
+        this.outOfStock = quantity > stock;
+    }
 }
@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+/**
+ * One line of a cart held in a CartStore. {@code id} is null until the line has been written to
+ * cart_items, and {@code heldQuantity} is the stock hold as of the last write.
+ */
+public record CartLineDTO(Long id, Long productId, int quantity, int heldQuantity) {
+
+    public CartLineDTO withQuantity(int newQuantity) {
+        return new CartLineDTO(id, productId, newQuantity, heldQuantity);
+    }
+
+    public CartLineDTO withHeldQuantity(int newHeldQuantity) {
+        return new CartLineDTO(id, productId, quantity, newHeldQuantity);
+    }
+}
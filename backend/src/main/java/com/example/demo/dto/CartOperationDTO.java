@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+import lombok.Data;
+
+/**
+ * One step of a PATCH /api/cart batch. ADD adds quantity to the line (creating it), SET replaces the
+ * line's quantity (creating it), REMOVE drops the line; quantity is ignored for REMOVE.
+ */
+@Data
+public class CartOperationDTO {
+    public enum Op { ADD, SET, REMOVE }
+
+    private Op op;
+    private Long productId;
+    private Integer quantity;
+}
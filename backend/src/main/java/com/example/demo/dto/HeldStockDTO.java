@@ -0,0 +1,5 @@
+package com.example.demo.dto;
+
+/** Units held on one product by the cart lines that still have a hold. */
+public record HeldStockDTO(Long productId, Long units) {
+}
@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class OrderPageDTO {
+    private List<OrderResponseDTO> items;
+    private String nextCursor; // pass as "cursor" to fetch the next (older) page, null on the last page
+
+    public OrderPageDTO() {
+    }
+
+    public OrderPageDTO(List<OrderResponseDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
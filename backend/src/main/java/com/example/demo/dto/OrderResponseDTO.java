@@ -4,6 +4,7 @@ import lombok.Data;
 
 import java.util.List;
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @Data
 public class OrderResponseDTO {
@@ -13,4 +14,5 @@ public class OrderResponseDTO {
     private List<OrderItemDTO> items;
     private String shippingAddress;
     private BigDecimal totalAmount;
+    private Instant createdAt;
 }
@@ -0,0 +1,29 @@
+package com.example.demo.dto;
+
+import lombok.Data;
+
+/**
+ * Handle for an order placed through the checkout queue. status is QUEUED until the order has been
+ * processed, then PLACED (orderId set) or FAILED (message says why).
+ */
+@Data
+public class OrderTicketDTO {
+    public static final String QUEUED = "QUEUED";
+    public static final String PLACED = "PLACED";
+    public static final String FAILED = "FAILED";
+
+    private String ticketId;
+    private String status;
+    private Long orderId;
+    private String message;
+
+    public OrderTicketDTO() {
+    }
+
+    public OrderTicketDTO(String ticketId, String status, Long orderId, String message) {
+        this.ticketId = ticketId;
+        this.status = status;
+        this.orderId = orderId;
+        this.message = message;
+    }
+}
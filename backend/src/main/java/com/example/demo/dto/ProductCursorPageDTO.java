@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import com.example.demo.entity.Product;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductCursorPageDTO {
+    private List<Product> items;
+    private Long nextCursor; // pass as "after" to fetch the next page, null on the last page
+
+    public ProductCursorPageDTO() {
+    }
+
+    public ProductCursorPageDTO(List<Product> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
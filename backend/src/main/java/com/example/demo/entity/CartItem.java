@@ -3,12 +3,23 @@ package com.example.demo.entity;
 import jakarta.persistence.*;
 import lombok.Data;
 
+import java.time.Instant;
+
 @Data
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = {
+        // One line per product in a cart; also the index behind every cart finder
+        @UniqueConstraint(name = "uk_cart_items_user_product", columnNames = {"user_id", "product_id"})
+}, indexes = {
+        // StockReservationService's sweep for holds that are past their expiry
+        @Index(name = "idx_cart_items_hold_expires", columnList = "hold_expires_at"),
+        // Checkout's sum of the units held on a product
+        @Index(name = "idx_cart_items_product_held", columnList = "product_id, held_quantity")
+})
 public class CartItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_items_seq")
+    @SequenceGenerator(name = "cart_items_seq", sequenceName = "cart_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -21,4 +32,11 @@ public class CartItem {
 
     @Column(nullable = false)
     private Integer quantity;
+
+    // Units this line holds back from other carts; 0 once the hold has expired
+    @Column(name = "held_quantity", nullable = false)
+    private int heldQuantity;
+
+    @Column(name = "hold_expires_at")
+    private Instant holdExpiresAt;
 }
@@ -0,0 +1,17 @@
+package com.example.demo.exception;
+
+/**
+ * Thrown when a bounded worker pool cannot take more work; mapped to 503 with a Retry-After header.
+ */
+public class ServiceBusyException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
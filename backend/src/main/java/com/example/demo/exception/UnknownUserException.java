@@ -0,0 +1,11 @@
+package com.example.demo.exception;
+
+/**
+ * Thrown when a valid token names a user that no longer exists, such as one deleted after the token was
+ * issued; mapped to 401 so the client signs in again.
+ */
+public class UnknownUserException extends RuntimeException {
+    public UnknownUserException() {
+        super("User not found");
+    }
+}
@@ -1,20 +1,79 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.CartItemResponseDTO;
 import com.example.demo.entity.CartItem;
 import com.example.demo.entity.User;
+import com.example.demo.dto.CartLineDTO;
+import com.example.demo.dto.HeldStockDTO;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+    // Products (and their categories) come in the same statement, so reading a cart is one query
+    @EntityGraph(attributePaths = {"product", "product.category"})
     List<CartItem> findByUser(User user);
 
+    // The cart page in one statement: each line with the product's current price and its stock plus the
+    // line's own hold, no entities loaded. CartService takes off what all carts hold.
+    @Query("select new com.example.demo.dto.CartItemResponseDTO(ci.id, p.id, p.name, p.imageUrl, p.price, " +
+            "p.stock + ci.heldQuantity, ci.quantity) " +
+            "from CartItem ci join ci.product p where ci.user.id = :userId order by ci.id")
+    List<CartItemResponseDTO> findCartLines(@Param("userId") Long userId);
+
+    // The finders below lock the cart rows they return: a line's hold is read and changed in the same
+    // transaction, and the lock keeps the expiry sweep from releasing it in between. Products are not
+    // joined, so only cart rows are locked.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<CartItem> findByUserAndProductId(User user, Long productId);
 
-    void deleteByUserAndProductId(User user, Long productId);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<CartItem> findByUserAndProductIdIn(User user, Collection<Long> productIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select ci from CartItem ci where ci.user = :user order by ci.id")
+    List<CartItem> findByUserForUpdate(@Param("user") User user);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select ci from CartItem ci where ci.id in :ids order by ci.id")
+    List<CartItem> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    // Write-behind cart flush: every line of a batch of users in one statement
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select ci from CartItem ci where ci.user.id in :userIds order by ci.id")
+    List<CartItem> findByUserIdInForUpdate(@Param("userIds") Collection<Long> userIds);
+
+    // Write-behind cart load: what the cart store keeps per line
+    @Query("select new com.example.demo.dto.CartLineDTO(ci.id, p.id, ci.quantity, ci.heldQuantity) " +
+            "from CartItem ci join ci.product p where ci.user.id = :userId order by ci.id")
+    List<CartLineDTO> findStoredLines(@Param("userId") Long userId);
+
+    // Lines whose hold ran out by the given instant, oldest first; ids only, the release locks them
+    @Query("select ci.id from CartItem ci where ci.holdExpiresAt <= :now order by ci.holdExpiresAt")
+    List<Long> findIdsWithHoldExpiredBy(@Param("now") Instant now, Limit limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select ci from CartItem ci where ci.id in :ids and ci.holdExpiresAt <= :now order by ci.id")
+    List<CartItem> findWithHoldExpiredByForUpdate(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    // Units held per product, from the hold rows themselves: StockReservationService loads its totals
+    // from the first and order batches allocate stock with the second
+    @Query("select new com.example.demo.dto.HeldStockDTO(ci.product.id, sum(ci.heldQuantity)) " +
+            "from CartItem ci where ci.heldQuantity > 0 group by ci.product.id")
+    List<HeldStockDTO> sumHeldByProduct();
 
-    void deleteAllByUser(User user);
+    @Query("select new com.example.demo.dto.HeldStockDTO(ci.product.id, sum(ci.heldQuantity)) " +
+            "from CartItem ci where ci.heldQuantity > 0 and ci.product.id in :productIds group by ci.product.id")
+    List<HeldStockDTO> sumHeldByProductIdIn(@Param("productIds") Collection<Long> productIds);
 }
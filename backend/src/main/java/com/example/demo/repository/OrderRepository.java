@@ -2,11 +2,34 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Order;
 import com.example.demo.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUser(User user);
     List<Order> findByStatus(String status);
+
+    // Orders with their user, items and item products in a single statement; null filters match everything
+    @Query("select o from Order o join fetch o.user left join fetch o.items i left join fetch i.product p left join fetch p.category " +
+            "where (:userId is null or o.user.id = :userId) and (:status is null or o.status = :status) order by o.id")
+    List<Order> findWithItems(@Param("userId") Long userId, @Param("status") String status);
+
+    // Keyset pages of order ids, newest first, strictly after the (createdAt, id) cursor
+    @Query("select o.id from Order o where o.user.id = :userId " +
+            "and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id)) order by o.createdAt desc, o.id desc")
+    List<Long> findIdsByUserBefore(@Param("userId") Long userId, @Param("createdAt") Instant createdAt, @Param("id") Long id, Limit limit);
+
+    @Query("select o.id from Order o " +
+            "where o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id) order by o.createdAt desc, o.id desc")
+    List<Long> findIdsBefore(@Param("createdAt") Instant createdAt, @Param("id") Long id, Limit limit);
+
+    @Query("select o from Order o join fetch o.user left join fetch o.items i left join fetch i.product p left join fetch p.category " +
+            "where o.id in :ids")
+    List<Order> findWithItemsByIds(@Param("ids") Collection<Long> ids);
 }
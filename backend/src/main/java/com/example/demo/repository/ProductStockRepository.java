@@ -0,0 +1,21 @@
+package com.example.demo.repository;
+
+import java.util.Map;
+
+public interface ProductStockRepository {
+    /**
+     * Deducts stock for every entry (product id -> quantity) with one conditional UPDATE per product,
+     * sent as a single JDBC batch. A product is only deducted if what remains still covers the units held
+     * on it by cart lines. Returns the per-entry update counts in the map's iteration order; 0 means not
+     * enough stock.
+     */
+    default int[] decrementStock(Map<Long, Integer> quantities) {
+        return decrementStock(quantities, Map.of());
+    }
+
+    /**
+     * As {@link #decrementStock(Map)}, but the units in {@code held} (product id -> quantity) are the
+     * buyer's own holds: they count as available to this order rather than as held against it.
+     */
+    int[] decrementStock(Map<Long, Integer> quantities, Map<Long, Integer> held);
+}
@@ -0,0 +1,75 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.Product;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+    // Holds are summed from the cart rows, so the product row is only written when stock really goes
+    private static final String DECREMENT_SQL = "UPDATE product SET stock = stock - ? WHERE id = ? AND stock - ? >= " +
+            "(SELECT COALESCE(SUM(held_quantity), 0) FROM cart_items WHERE product_id = ?) - ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int[] decrementStock(Map<Long, Integer> quantities, Map<Long, Integer> held) {
+        return executeBatch(DECREMENT_SQL, quantities.entrySet(), (statement, id, quantity) -> {
+            statement.setInt(1, quantity);
+            statement.setLong(2, id);
+            statement.setInt(3, quantity);
+            statement.setLong(4, id);
+            statement.setInt(5, held.getOrDefault(id, 0));
+        });
+    }
+
+    private int[] executeBatch(String sql, Collection<Map.Entry<Long, Integer>> quantities, Binder binder) {
+        if (quantities.isEmpty()) {
+            return new int[0];
+        }
+        // Cart lines written earlier in this transaction must reach the database before the UPDATE sums their holds
+        entityManager.flush();
+        // Runs on the transaction's own connection so a failed line rolls back the whole unit of work
+        int[] updated = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Map.Entry<Long, Integer> entry : quantities) {
+                    binder.bind(statement, entry.getKey(), entry.getValue());
+                    statement.addBatch();
+                }
+                return statement.executeBatch();
+            }
+        });
+        evictFromSecondLevelCache(quantities.stream().map(Map.Entry::getKey).distinct().toList());
+        return updated;
+    }
+
+    // The UPDATE bypasses Hibernate, so drop the cached rows now and again after commit, when a
+    // concurrent load can no longer re-cache the old stock
+    private void evictFromSecondLevelCache(List<Long> ids) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        ids.forEach(id -> cache.evict(Product.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ids.forEach(id -> cache.evict(Product.class, id));
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement statement, Long id, int quantity) throws SQLException;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.security;
+
+import com.example.demo.exception.UnknownUserException;
+import com.example.demo.repository.UserRepository;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Principal built from a verified access token. Carries the user id so services can reference
+ * the current user without looking it up by email.
+ */
+public class AuthenticatedUser extends User {
+    private final Long id;
+
+    public AuthenticatedUser(Long id, String email, Collection<? extends GrantedAuthority> authorities) {
+        super(email, "", authorities);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    // Id of the user in the current security context, or null when it is unknown (e.g. tokens issued without one)
+    public static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.getId();
+        }
+        return null;
+    }
+
+    // The token carries the user id, so the current user is a reference rather than a query.
+    // Tokens issued before the id claim existed fall back to the email lookup.
+    public static com.example.demo.entity.User currentUser(UserRepository userRepository) {
+        Long userId = currentUserId();
+        if (userId != null) {
+            return userRepository.getReferenceById(userId);
+        }
+        return findByCurrentEmail(userRepository);
+    }
+
+    // As currentUser, for writes that store a reference to the user (new cart lines, orders). A token
+    // outlives a deleted user, and the reference would otherwise only fail at flush; this costs one
+    // primary-key lookup without loading the user.
+    public static com.example.demo.entity.User currentUserForWrite(UserRepository userRepository) {
+        Long userId = currentUserId();
+        if (userId == null) {
+            return findByCurrentEmail(userRepository);
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new UnknownUserException();
+        }
+        return userRepository.getReferenceById(userId);
+    }
+
+    // As currentUser, for callers that only need the id
+    public static Long currentUserId(UserRepository userRepository) {
+        Long userId = currentUserId();
+        return userId != null ? userId : findByCurrentEmail(userRepository).getId();
+    }
+
+    private static com.example.demo.entity.User findByCurrentEmail(UserRepository userRepository) {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByEmail(email).orElseThrow(UnknownUserException::new);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo.security;
+
+import com.example.demo.dto.CacheStatsDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the Authentication built from a verified JWT, keyed by a SHA-256 digest of the token.
+ * An entry never outlives the token's own expiry, so a cached token is never accepted after exp.
+ */
+@Component
+public class JwtAuthenticationCache implements MeterBinder {
+    private final JwtUtil jwtUtil;
+    private final Cache<String, CachedAuthentication> cache;
+
+    @Autowired
+    public JwtAuthenticationCache(JwtUtil jwtUtil,
+                                  @Value("${jwt.cache.max-size:10000}") long maxSize,
+                                  @Value("${jwt.cache.max-ttl-seconds:300}") long maxTtlSeconds) {
+        this.jwtUtil = jwtUtil;
+        long maxTtlNanos = TimeUnit.SECONDS.toNanos(maxTtlSeconds);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, CachedAuthentication>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedAuthentication value, long currentTime) {
+                        long untilExpiry = TimeUnit.MILLISECONDS.toNanos(value.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(untilExpiry, maxTtlNanos));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedAuthentication value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedAuthentication value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    // Returns the cached Authentication for a previously verified token, or parses and verifies it.
+    // Invalid or expired tokens throw and are never cached.
+    public Authentication authenticate(String token) {
+        return cache.get(digest(token), key -> build(jwtUtil.extractAllClaims(token))).authentication();
+    }
+
+    // Uncached path: full parse and signature check plus principal construction on every call
+    public Authentication authenticateUncached(String token) {
+        return build(jwtUtil.extractAllClaims(token)).authentication();
+    }
+
+    public CacheStatsDTO getStats() {
+        CacheStats stats = cache.stats();
+        CacheStatsDTO dto = new CacheStatsDTO();
+        dto.setSize(cache.estimatedSize());
+        dto.setHits(stats.hitCount());
+        dto.setMisses(stats.missCount());
+        dto.setEvictions(stats.evictionCount());
+        dto.setHitRatio(stats.hitRate());
+        return dto;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "jwtAuthentications");
+    }
+
+    private static CachedAuthentication build(Claims claims) {
+        String email = claims.getSubject();
+        if (email == null) {
+            throw new IllegalArgumentException("Token has no subject");
+        }
+        String role = (String) claims.get("role");
+        List<GrantedAuthority> authorities = Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role));
+        Number userId = claims.get(JwtUtil.USER_ID_CLAIM, Number.class);
+        AuthenticatedUser principal = new AuthenticatedUser(userId != null ? userId.longValue() : null, email, authorities);
+        Authentication authentication = new UsernamePasswordAuthenticationToken(principal, null, authorities);
+        return new CachedAuthentication(authentication, claims.getExpiration().getTime());
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CachedAuthentication(Authentication authentication, long expiresAtMillis) {
+    }
+}
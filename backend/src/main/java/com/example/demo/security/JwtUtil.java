@@ -9,6 +9,7 @@ import java.util.Date;
 
 @Component
 public class JwtUtil {
+    public static final String USER_ID_CLAIM = "uid";
 
     @Value("${jwt.secret}")
     private String secret;
@@ -16,9 +17,10 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private long expirationMs;
 
-    public String generateToken(String email, String role) {
+    public String generateToken(Long userId, String email, String role) {
         return Jwts.builder()
                 .setSubject(email)
+                .claim(USER_ID_CLAIM, userId)
                 .claim("role", role)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
@@ -0,0 +1,285 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OrderTicketDTO;
+import com.example.demo.dto.PlaceOrderRequestDTO;
+import com.example.demo.exception.ServiceBusyException;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.OrderService.OrderOutcome;
+import com.example.demo.service.OrderService.QueuedOrder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Asynchronous checkout (app.orders.async.enabled). An order request is checked, queued and answered
+ * with a ticket straight away, so the request thread never waits for a connection. One pipeline thread
+ * takes the queue in micro-batches: the first order starts a batch, which closes after batch-size orders
+ * or max-wait-ms, whichever comes first. Each batch is placed in one transaction by
+ * {@link OrderService#placeOrderBatch}.
+ * <p>
+ * An order refused for its own reasons (stock, cart) fails alone. If the batch transaction fails as a
+ * whole, its orders are placed again one at a time so the rest are not held back by the one that broke
+ * it. Finished tickets are kept for ticket-ttl-seconds for clients to poll.
+ * <p>
+ * The queue and the tickets live in this instance's memory. A client must poll (or subscribe to) the
+ * instance that took its order, so with more than one instance async orders need sticky routing by
+ * user; otherwise run a single instance with this switched on. On shutdown the service refuses new
+ * orders and places everything already queued before the context closes; a crash loses the queue.
+ */
+@Component
+@ConditionalOnProperty(name = "app.orders.async.enabled", havingValue = "true")
+public class AsyncOrderService implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncOrderService.class);
+    private static final long IDLE_POLL_MS = 500;
+
+    private final OrderService orderService;
+    private final UserRepository userRepository;
+    private final BlockingQueue<Ticket> queue;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final long ticketTtlMs;
+    private final long retryAfterSeconds;
+    private final AtomicLong placed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile DistributionSummary batchSizes;
+    // Submits hold the read lock while they queue, so none can slip in once shutdown has stopped accepting
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+    private volatile boolean accepting;
+    private Thread pipeline;
+
+    @Autowired
+    public AsyncOrderService(OrderService orderService,
+                             UserRepository userRepository,
+                             @Value("${app.orders.async.queue-capacity:10000}") int queueCapacity,
+                             @Value("${app.orders.async.batch-size:50}") int batchSize,
+                             @Value("${app.orders.async.max-wait-ms:5}") long maxWaitMs,
+                             @Value("${app.orders.async.ticket-ttl-seconds:600}") long ticketTtlSeconds,
+                             @Value("${app.orders.async.retry-after-seconds:1}") long retryAfterSeconds) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("app.orders.async.batch-size must be positive");
+        }
+        this.orderService = orderService;
+        this.userRepository = userRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.ticketTtlMs = TimeUnit.SECONDS.toMillis(ticketTtlSeconds);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @PostConstruct
+    void start() {
+        accepting = true;
+        pipeline = new Thread(this::run, "order-pipeline");
+        pipeline.setDaemon(true);
+        pipeline.start();
+    }
+
+    // Stops taking orders, lets the pipeline finish the batch in hand and places what is still queued on
+    // this thread, however long that takes: an accepted order is never dropped by a clean shutdown
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        submitLock.writeLock().lock();
+        try {
+            accepting = false;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        pipeline.join();
+        List<Ticket> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            process(rest.subList(from, Math.min(from + batchSize, rest.size())));
+        }
+        if (!rest.isEmpty()) {
+            logger.info("Placed {} queued orders on shutdown", rest.size());
+        }
+    }
+
+    /**
+     * Queues the order for the current user. Throws ServiceBusyException (503) when the queue is full or
+     * the service is shutting down.
+     */
+    public OrderTicketDTO submit(PlaceOrderRequestDTO request) {
+        List<Long> productIds = request.getProductIds();
+        if (productIds == null || productIds.isEmpty()) {
+            throw new IllegalArgumentException("No products selected for order");
+        }
+        if (productIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Product id is required");
+        }
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), new QueuedOrder(AuthenticatedUser.currentUserForWrite(userRepository).getId(), request));
+        tickets.put(ticket.id, ticket);
+        boolean queued;
+        submitLock.readLock().lock();
+        try {
+            queued = accepting && queue.offer(ticket);
+        } finally {
+            submitLock.readLock().unlock();
+        }
+        if (!queued) {
+            tickets.remove(ticket.id);
+            throw new ServiceBusyException("Too many orders waiting, please retry shortly", retryAfterSeconds);
+        }
+        return ticket.view();
+    }
+
+    /** The current state of one of the current user's tickets. */
+    public OrderTicketDTO getTicket(String ticketId) {
+        return findOwnTicket(ticketId).view();
+    }
+
+    /** Completes with the ticket's final state (PLACED or FAILED) once its order has been processed. */
+    public CompletableFuture<OrderTicketDTO> whenDone(String ticketId) {
+        return findOwnTicket(ticketId).result;
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("orders.queue.pending", queue, BlockingQueue::size)
+                .description("Orders waiting in the checkout queue")
+                .register(registry);
+        batchSizes = DistributionSummary.builder("orders.queue.batch.size")
+                .description("Orders placed per group commit")
+                .register(registry);
+        FunctionCounter.builder("orders.queue.placed", placed, AtomicLong::get)
+                .description("Queued orders placed")
+                .register(registry);
+        FunctionCounter.builder("orders.queue.failed", failed, AtomicLong::get)
+                .description("Queued orders refused or failed")
+                .register(registry);
+    }
+
+    private void run() {
+        long nextExpiry = System.currentTimeMillis() + IDLE_POLL_MS;
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (accepting) {
+            try {
+                Ticket first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    // Linger briefly so orders arriving together share one commit
+                    long deadline = System.nanoTime() + maxWaitNanos;
+                    while (batch.size() < batchSize) {
+                        Ticket next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    process(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // process() completes every ticket itself; this only guards the loop
+                logger.error("Order pipeline step failed", e);
+                batch.clear();
+            }
+            if (System.currentTimeMillis() >= nextExpiry) {
+                expireTickets();
+                nextExpiry = System.currentTimeMillis() + IDLE_POLL_MS;
+            }
+        }
+    }
+
+    private void process(List<Ticket> batch) {
+        List<OrderOutcome> outcomes;
+        try {
+            outcomes = orderService.placeOrderBatch(batch.stream().map(ticket -> ticket.order).toList());
+        } catch (RuntimeException e) {
+            logger.warn("Order batch of {} failed, placing its orders one at a time", batch.size(), e);
+            outcomes = batch.stream().map(this::placeAlone).toList();
+        }
+        if (batchSizes != null) {
+            batchSizes.record(batch.size());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), outcomes.get(i));
+        }
+    }
+
+    private OrderOutcome placeAlone(Ticket ticket) {
+        try {
+            return orderService.placeOrderBatch(List.of(ticket.order)).get(0);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return new OrderOutcome(null, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("Queued order {} failed", ticket.id, e);
+            return new OrderOutcome(null, "Order could not be placed");
+        }
+    }
+
+    private void complete(Ticket ticket, OrderOutcome outcome) {
+        ticket.finishedAt = System.currentTimeMillis();
+        if (outcome.orderId() != null) {
+            placed.incrementAndGet();
+            ticket.result.complete(new OrderTicketDTO(ticket.id, OrderTicketDTO.PLACED, outcome.orderId(), "Order placed successfully"));
+        } else {
+            failed.incrementAndGet();
+            ticket.result.complete(new OrderTicketDTO(ticket.id, OrderTicketDTO.FAILED, null, outcome.error()));
+        }
+    }
+
+    private void expireTickets() {
+        long cutoff = System.currentTimeMillis() - ticketTtlMs;
+        tickets.values().removeIf(ticket -> ticket.result.isDone() && ticket.finishedAt < cutoff);
+    }
+
+    // Another user's ticket looks the same as a missing one
+    private Ticket findOwnTicket(String ticketId) {
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.order.userId().equals(AuthenticatedUser.currentUserId(userRepository))) {
+            throw new IllegalArgumentException("Order ticket not found: " + ticketId);
+        }
+        return ticket;
+    }
+
+    private static final class Ticket {
+        final String id;
+        final QueuedOrder order;
+        final CompletableFuture<OrderTicketDTO> result = new CompletableFuture<>();
+        volatile long finishedAt;
+
+        Ticket(String id, QueuedOrder order) {
+            this.id = id;
+            this.order = order;
+        }
+
+        OrderTicketDTO view() {
+            return result.getNow(new OrderTicketDTO(id, OrderTicketDTO.QUEUED, null, null));
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.example.demo.service;
 
+import com.example.demo.config.ReadWriteRoutingDataSource;
 import com.example.demo.dto.AuthResponseDTO;
 import com.example.demo.dto.UserRequestDTO;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.security.JwtUtil;
+import com.example.demo.security.PasswordHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 @Service
 public class AuthService {
+    private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
 
     @Autowired
     private UserRepository userRepo;
@@ -18,7 +22,8 @@ public class AuthService {
     @Autowired
     private JwtUtil jwtUtil;
 
-    private final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
+    @Autowired
+    private PasswordHasher passwordHasher;
 
     public void register(UserRequestDTO request) {
         if (userRepo.findByEmail(request.email).isPresent()) {
@@ -32,7 +37,7 @@ public class AuthService {
         }
         User user = new User();
         user.setEmail(request.email);
-        user.setPassword(encoder.encode(request.password));
+        user.setPassword(passwordHasher.encode(request.password));
         user.setRole("USER");
         user.setName(request.name);
         user.setPhone(request.phone);
@@ -45,7 +50,7 @@ public class AuthService {
         }
         User user = new User();
         user.setEmail(request.email);
-        user.setPassword(encoder.encode(request.password));
+        user.setPassword(passwordHasher.encode(request.password));
         // Set role from request if valid, otherwise default to ADMIN
         if (request.role != null && (request.role.equals("ADMIN") || request.role.equals("USER"))) {
             user.setRole(request.role);
@@ -58,14 +63,25 @@ public class AuthService {
     }
 
     public AuthResponseDTO login(UserRequestDTO request) {
-        User user = userRepo.findByEmail(request.email)
+        // Primary, so an account registered a moment ago can log in despite replica lag
+        User user = ReadWriteRoutingDataSource.onPrimary(() -> userRepo.findByEmail(request.email))
                 .orElseThrow(() -> new IllegalArgumentException("Invalid email or password"));
 
-        if (!encoder.matches(request.password, user.getPassword())) {
+        if (!passwordHasher.matches(request.password, user.getPassword())) {
             throw new IllegalArgumentException("Invalid email or password");
         }
+        // The plain password is only available here, so hashes made at an older cost are upgraded on login.
+        // Best effort: the password was verified, so a busy hasher or a failed save must not refuse the login
+        if (passwordHasher.needsRehash(user.getPassword())) {
+            try {
+                user.setPassword(passwordHasher.encode(request.password));
+                userRepo.save(user);
+            } catch (RuntimeException e) {
+                logger.warn("Skipped password rehash for user {}: {}", user.getId(), e.getMessage());
+            }
+        }
 
-        String token = jwtUtil.generateToken(user.getEmail(), user.getRole());
+        String token = jwtUtil.generateToken(user.getId(), user.getEmail(), user.getRole());
         String refreshToken = jwtUtil.generateRefreshToken(user.getEmail());
         AuthResponseDTO response = new AuthResponseDTO();
         response.setToken(token);
@@ -87,7 +103,7 @@ public class AuthService {
         }
         User user = userRepo.findByEmail(email)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        String token = jwtUtil.generateToken(user.getEmail(), user.getRole());
+        String token = jwtUtil.generateToken(user.getId(), user.getEmail(), user.getRole());
         AuthResponseDTO response = new AuthResponseDTO();
         response.setToken(token);
         response.setRefreshToken(refreshToken); // or issue a new one
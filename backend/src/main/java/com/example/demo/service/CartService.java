@@ -1,21 +1,22 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CartDTO;
 import com.example.demo.dto.CartItemRequestDTO;
 import com.example.demo.dto.CartItemResponseDTO;
+import com.example.demo.dto.CartOperationDTO;
 import com.example.demo.entity.CartItem;
 import com.example.demo.entity.Product;
 import com.example.demo.entity.User;
 import com.example.demo.repository.CartItemRepository;
 import com.example.demo.repository.ProductRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,102 +24,180 @@ public class CartService {
     @Autowired
     private CartItemRepository cartItemRepository;
     @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
     private ProductRepository productRepository;
     @Autowired
-    private UserRepository userRepository;
+    private StockReservationService stockReservationService;
 
-    private void validateStock(Product product, int quantity) {
-        if (quantity > product.getStock()) {
-            throw new IllegalArgumentException("Requested quantity exceeds available stock.");
-        }
-    }
+    static final int MAX_OPERATIONS = 100;
+    static final int MAX_LINE_QUANTITY = 1000;
 
+    // Every change to a line's quantity moves its stock hold with it, so stock is claimed when it goes
+    // into the cart rather than found missing at checkout
     @Transactional
     public void addItemToCart(CartItemRequestDTO request) {
-        User user = getCurrentUser();
-        Product product = productRepository.findById(request.getProductId()).orElseThrow();
-        Optional<CartItem> existing = cartItemRepository.findByUserAndProductId(user, product.getId());
-        int requestedQuantity = request.getQuantity();
-        int currentQuantity = existing.map(CartItem::getQuantity).orElse(0);
-        int totalQuantity = currentQuantity + requestedQuantity;
-        validateStock(product, totalQuantity);
-        if (existing.isPresent()) {
-            CartItem item = existing.get();
-            item.setQuantity(totalQuantity);
-            cartItemRepository.save(item);
-        } else {
-            CartItem item = new CartItem();
-            item.setUser(user);
-            item.setProduct(product);
-            item.setQuantity(requestedQuantity);
-            cartItemRepository.save(item);
+        User user = AuthenticatedUser.currentUserForWrite(userRepository);
+        Product product = productCache.get(request.getProductId()).orElseThrow();
+        CartItem item = cartItemRepository.findByUserAndProductId(user, product.getId()).orElseGet(() -> {
+            CartItem line = new CartItem();
+            line.setUser(user);
+            line.setProduct(product);
+            line.setQuantity(0);
+            return line;
+        });
+        item.setQuantity(addQuantity(item.getQuantity(), request.getQuantity()));
+        stockReservationService.hold(List.of(item), List.of());
+        cartItemRepository.save(item);
+    }
+
+    // Applies a whole batch in one transaction: one IN query for the products, one for the user's existing
+    // lines; inserts, updates and deletes then go out as JDBC batches at flush.
+    // Holds are moved to the final quantity of each line, so the batch succeeds or fails as a whole.
+    @Transactional
+    public CartDTO applyOperations(List<CartOperationDTO> operations) {
+        validateOperations(operations);
+        User user = AuthenticatedUser.currentUserForWrite(userRepository);
+        Set<Long> productIds = operations.stream().map(CartOperationDTO::getProductId).collect(Collectors.toSet());
+        Map<Long, Product> products = productRepository.findAllWithCategoryByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new IllegalArgumentException("Product not found: " + productId);
+            }
+        }
+        Map<Long, CartItem> lines = cartItemRepository.findByUserAndProductIdIn(user, productIds).stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), Function.identity()));
+        // Removed rows are kept aside so a later ADD or SET of the same product reuses the row; Hibernate
+        // flushes inserts before deletes, so a fresh row would hit the (user, product) unique key
+        Map<Long, CartItem> removed = new HashMap<>();
+        for (CartOperationDTO operation : operations) {
+            Long productId = operation.getProductId();
+            if (operation.getOp() == CartOperationDTO.Op.REMOVE) {
+                CartItem line = lines.remove(productId);
+                if (line != null && line.getId() != null) {
+                    removed.put(productId, line);
+                }
+                continue;
+            }
+            CartItem line = lines.get(productId);
+            if (line == null) {
+                line = removed.remove(productId);
+                if (line == null) {
+                    line = new CartItem();
+                    line.setUser(user);
+                    line.setProduct(products.get(productId));
+                }
+                line.setQuantity(0);
+                lines.put(productId, line);
+            }
+            int quantity = operation.getOp() == CartOperationDTO.Op.ADD
+                    ? addQuantity(line.getQuantity(), operation.getQuantity())
+                    : operation.getQuantity();
+            line.setQuantity(quantity);
         }
+        stockReservationService.hold(lines.values(), removed.values());
+        cartItemRepository.deleteAll(removed.values());
+        cartItemRepository.saveAll(lines.values());
+        return getCart();
     }
 
-    public List<CartItemResponseDTO> getCartItems() {
-        User user = getCurrentUser();
-        List<CartItem> items = cartItemRepository.findByUser(user);
-        return items.stream()
-                .<CartItemResponseDTO>map(this::toDTO)
-                .collect(Collectors.toList());
+    // Shared with WriteBehindCartService so both cart modes accept the same batches
+    static void validateOperations(List<CartOperationDTO> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("No cart operations given.");
+        }
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_OPERATIONS + " cart operations per request.");
+        }
+        for (CartOperationDTO operation : operations) {
+            validateOperation(operation);
+        }
+    }
+
+    private static void validateOperation(CartOperationDTO operation) {
+        if (operation == null || operation.getOp() == null || operation.getProductId() == null) {
+            throw new IllegalArgumentException("Each cart operation needs an op and a productId.");
+        }
+        if (operation.getOp() != CartOperationDTO.Op.REMOVE) {
+            checkQuantity(operation.getQuantity());
+        }
+    }
+
+    // A line holds between 1 and MAX_LINE_QUANTITY units; an ADD is checked on the sum, which can
+    // therefore never wrap around to a small or negative quantity
+    static int checkQuantity(Integer quantity) {
+        if (quantity == null || quantity < 1) {
+            throw new IllegalArgumentException("Quantity must be at least 1.");
+        }
+        if (quantity > MAX_LINE_QUANTITY) {
+            throw new IllegalArgumentException("At most " + MAX_LINE_QUANTITY + " of a product per cart.");
+        }
+        return quantity;
+    }
+
+    static int addQuantity(int current, Integer added) {
+        try {
+            return checkQuantity(Math.addExact(current, checkQuantity(added)));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("At most " + MAX_LINE_QUANTITY + " of a product per cart.");
+        }
+    }
+
+    // Totals are summed here in BigDecimal, so the client shows them as they will be charged
+    @Transactional(readOnly = true)
+    public CartDTO getCart() {
+        User user = AuthenticatedUser.currentUser(userRepository);
+        List<CartItemResponseDTO> lines = cartItemRepository.findCartLines(user.getId());
+        for (CartItemResponseDTO line : lines) {
+            line.setStock(line.getStock() - stockReservationService.heldStock(line.getProductId()));
+            line.setOutOfStock(line.getQuantity() > line.getStock());
+        }
+        return new CartDTO(lines);
     }
 
     @Transactional
     public void updateCartItem(Long productId, int quantity) {
-        User user = getCurrentUser();
+        User user = AuthenticatedUser.currentUser(userRepository);
         CartItem item = cartItemRepository.findByUserAndProductId(user, productId).orElseThrow();
-        Product product = item.getProduct();
-        validateStock(product, quantity);
-        item.setQuantity(quantity);
+        item.setQuantity(checkQuantity(quantity));
+        stockReservationService.hold(List.of(item), List.of());
         cartItemRepository.save(item);
     }
 
     @Transactional
-    public void updateCartItemByEmailAndProductId(Long productId, int quantity) {
-        User user = getCurrentUser();
-        CartItem item = cartItemRepository.findByUserAndProductId(user, productId).orElseThrow();
-        Product product = item.getProduct();
-        validateStock(product, quantity);
-        item.setQuantity(quantity);
-        cartItemRepository.save(item);
+    public void updateCartItemByEmailAndProductId(Long productId, Integer quantity) {
+        updateCartItem(productId, quantity);
     }
 
     @Transactional
     public void removeCartItem(Long productId) {
-        User user = getCurrentUser();
+        User user = AuthenticatedUser.currentUser(userRepository);
         // Check if the product exists before attempting to delete from cart
-        productRepository.findById(productId).orElseThrow(() -> new IllegalArgumentException("Product not found."));
-        cartItemRepository.deleteByUserAndProductId(user, productId);
+        productCache.get(productId).orElseThrow(() -> new IllegalArgumentException("Product not found."));
+        cartItemRepository.findByUserAndProductId(user, productId).ifPresent(item -> removeLines(List.of(item)));
     }
 
     @Transactional
     public void removeAllCartItemsForCurrentUser() {
-        User user = getCurrentUser();
-        cartItemRepository.deleteAllByUser(user);
+        User user = AuthenticatedUser.currentUser(userRepository);
+        removeLines(cartItemRepository.findByUserForUpdate(user));
     }
 
     @Transactional
     public void deleteCartItemsByIds(List<Long> cartItemIds) {
         if (cartItemIds != null && !cartItemIds.isEmpty()) {
-            cartItemRepository.deleteAllByIdInBatch(cartItemIds);
+            removeLines(cartItemRepository.findAllByIdForUpdate(cartItemIds));
         }
     }
 
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userEmail = authentication.getName();
-        return userRepository.findByEmail(userEmail).orElseThrow(() -> new IllegalArgumentException("User not found"));
-    }
-
-    private CartItemResponseDTO toDTO(CartItem item) {
-        CartItemResponseDTO dto = new CartItemResponseDTO();
-        dto.setId(item.getId());
-        Product product = item.getProduct();
-        dto.setProductId(product.getId());
-        dto.setProductName(product.getName());
-        dto.setProductImage(product.getImageUrl());
-        dto.setProductPrice(product.getPrice() != null ? product.getPrice().doubleValue() : 0.0);
-        dto.setQuantity(item.getQuantity());
-        return dto;
+    // Lines leaving the cart without an order give their held stock back
+    private void removeLines(List<CartItem> lines) {
+        if (!lines.isEmpty()) {
+            stockReservationService.release(lines);
+            cartItemRepository.deleteAllInBatch(lines);
+        }
     }
 }
@@ -0,0 +1,28 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CartLineDTO;
+
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cart state for the write-behind cart mode (WriteBehindCartService), keyed by user id. Each value is
+ * a user's whole cart, product id -> line, and is only ever replaced as a whole.
+ * <p>
+ * InMemoryCartStore is the default. A shared store such as Redis can back it instead, as one hash per user
+ * updated with WATCH/MULTI or a script; pick the implementation with app.cart.write-behind.store.
+ */
+public interface CartStore {
+    /** The user's cart, or null when the store holds nothing for the user. */
+    Map<Long, CartLineDTO> get(Long userId);
+
+    /**
+     * Atomically replaces the user's cart with {@code change} applied to the current one (null when absent).
+     * Returning null removes the entry. An exception thrown by {@code change} leaves the cart unchanged.
+     */
+    Map<Long, CartLineDTO> update(Long userId, UnaryOperator<Map<Long, CartLineDTO>> change);
+
+    void remove(Long userId);
+
+    int size();
+}
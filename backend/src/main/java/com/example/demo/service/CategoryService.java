@@ -5,6 +5,7 @@ import com.example.demo.entity.Category;
 import com.example.demo.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -14,10 +15,12 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Transactional(readOnly = true)
     public List<CategoryDTO> getAllCategories() {
         return categoryRepository.findAll().stream().map(this::toDTO).collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public CategoryDTO getCategory(Long id) {
         Category category = categoryRepository.findById(id).orElseThrow();
         return toDTO(category);
@@ -30,6 +33,7 @@ public class CategoryService {
         return toDTO(category);
     }
 
+    @Transactional
     public CategoryDTO updateCategory(Long id, CategoryDTO dto) {
         Category category = categoryRepository.findById(id).orElseThrow();
         category.setName(dto.getName());
@@ -37,6 +41,7 @@ public class CategoryService {
         return toDTO(category);
     }
 
+    @Transactional
     public void deleteCategory(Long id) {
         categoryRepository.deleteById(id);
     }
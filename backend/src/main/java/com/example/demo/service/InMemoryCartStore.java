@@ -0,0 +1,44 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CartLineDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * CartStore on a ConcurrentHashMap in this JVM. Carts are stored as unmodifiable maps that keep the
+ * order lines were added in.
+ */
+@Component
+@ConditionalOnExpression("${app.cart.write-behind.enabled:false} and '${app.cart.write-behind.store:memory}' == 'memory'")
+public class InMemoryCartStore implements CartStore {
+    private final ConcurrentHashMap<Long, Map<Long, CartLineDTO>> carts = new ConcurrentHashMap<>();
+
+    @Override
+    public Map<Long, CartLineDTO> get(Long userId) {
+        return carts.get(userId);
+    }
+
+    @Override
+    public Map<Long, CartLineDTO> update(Long userId, UnaryOperator<Map<Long, CartLineDTO>> change) {
+        return carts.compute(userId, (key, current) -> {
+            Map<Long, CartLineDTO> updated = change.apply(current);
+            return updated != null ? Collections.unmodifiableMap(new LinkedHashMap<>(updated)) : null;
+        });
+    }
+
+    @Override
+    public void remove(Long userId) {
+        carts.remove(userId);
+    }
+
+    @Override
+    public int size() {
+        return carts.size();
+    }
+}
@@ -1,23 +1,54 @@
 package com.example.demo.service;
 
+import com.example.demo.config.ReadWriteRoutingDataSource;
 import com.example.demo.dto.OrderItemDTO;
+import com.example.demo.dto.OrderPageDTO;
 import com.example.demo.dto.OrderResponseDTO;
 import com.example.demo.dto.PlaceOrderRequestDTO;
 import com.example.demo.dto.PlaceOrderResponseDTO;
 import com.example.demo.entity.*;
 import com.example.demo.repository.*;
+import com.example.demo.security.AuthenticatedUser;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.SelectionQuery;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
+    public static final int DEFAULT_PAGE_LIMIT = 20;
+    public static final int MAX_PAGE_LIMIT = 100;
+    // First-page cursor: sorts after every real order
+    private static final Instant FIRST_PAGE_CREATED_AT = Instant.parse("9999-12-31T23:59:59Z");
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Autowired
     private CartItemRepository cartItemRepository;
     @Autowired
@@ -28,25 +59,33 @@ public class OrderService {
     private ProductRepository productRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private StockReservationService stockReservationService;
+    // Present only in write-behind cart mode
+    @Autowired(required = false)
+    private WriteBehindCartService writeBehindCartService;
+    // Present only with a read replica (app.datasource.replica.url)
+    @Autowired(required = false)
+    private ReadWriteRoutingDataSource routingDataSource;
 
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userEmail = authentication.getName();
-        return userRepository.findByEmail(userEmail).orElseThrow(() -> new IllegalArgumentException("User not found"));
-    }
-
+    @Timed(value = "orders.place", description = "Order placement including stock deduction", histogram = true)
     @Transactional
     public Order placeOrder(PlaceOrderRequestDTO request) {
-        // 1. Get the current user
-        User user = getCurrentUser();
+        // 1. Get the current user, who must still exist to own the order
+        User user = AuthenticatedUser.currentUserForWrite(userRepository);
         // 2. Get the list of selected product IDs from the request
         List<Long> selectedProductIds = request.getProductIds();
         // 3. Validate that at least one product is selected
         if (selectedProductIds == null || selectedProductIds.isEmpty()) {
             throw new IllegalArgumentException("No products selected for order");
         }
-        // 4. Retrieve cart items for the user that match the selected product IDs
-        List<CartItem> cartItems = cartItemRepository.findByUser(user)
+        // 3a. In write-behind cart mode, write the user's pending cart changes first, in this transaction
+        if (writeBehindCartService != null) {
+            writeBehindCartService.flushForCheckout(user.getId());
+        }
+        // 4. Retrieve and lock the user's cart lines that match the selected product IDs; the lock keeps the
+        //    expiry sweep from releasing a hold this order is about to convert
+        List<CartItem> cartItems = cartItemRepository.findByUserForUpdate(user)
                 .stream()
                 .filter(item -> selectedProductIds.contains(item.getProduct().getId()))
                 .toList();
@@ -54,25 +93,155 @@ public class OrderService {
         if (cartItems.isEmpty()) {
             throw new IllegalStateException("No matching cart items found for selected products");
         }
-        // 6. Create a new Order entity and set its properties
+        // 6. Deduct stock for all lines at once with conditional UPDATEs; ids are sorted so concurrent
+        //    checkouts lock product rows in the same order and cannot deadlock each other. Each UPDATE
+        //    leaves stock for every other cart's hold, and this buyer's own holds count towards the order
+        Map<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Integer> held = new HashMap<>();
+        for (CartItem cartItem : cartItems) {
+            quantities.merge(cartItem.getProduct().getId(), cartItem.getQuantity(), Integer::sum);
+            held.merge(cartItem.getProduct().getId(), cartItem.getHeldQuantity(), Integer::sum);
+        }
+        // One query for the products (and categories) behind the lines, so the proxies below need no SQL
+        Map<Long, Product> products = productRepository.findAllWithCategoryByIdIn(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        int[] updated = productRepository.decrementStock(quantities, held);
+        int line = 0;
+        for (Long productId : quantities.keySet()) {
+            // 6a. No row updated means stock was short; throwing rolls back the lines already deducted
+            if (updated[line++] == 0) {
+                throw new IllegalArgumentException("Not enough stock for product: " + products.get(productId).getName());
+            }
+        }
+        stockReservationService.checkedOut(cartItems);
+        // 7-9. Create the order and its items
+        Order order = createOrder(user, request, cartItems);
+        // 10. Remove the processed cart items from the user's cart
+        cartItemRepository.deleteAllByIdInBatch(cartItems.stream().map(CartItem::getId).toList());
+        // 11. Return the created order
+        return order;
+    }
+
+    /** One order waiting in the checkout queue (see AsyncOrderService). */
+    public record QueuedOrder(Long userId, PlaceOrderRequestDTO request) {
+    }
+
+    /** What became of a queued order: the new order's id, or why it was refused. */
+    public record OrderOutcome(Long orderId, String error) {
+        static OrderOutcome refused(String error) {
+            return new OrderOutcome(null, error);
+        }
+    }
+
+    /**
+     * Places a batch of queued orders in one transaction (group commit). The buyers' cart lines and the
+     * products are read with one locking query each, stock is allocated in memory in queue order, and the
+     * whole batch then costs one conditional UPDATE per product plus batched inserts and one delete.
+     * An order with no matching cart lines or short of stock is refused on its own; the others go ahead.
+     * Outcomes are returned in batch order.
+     */
+    @Timed(value = "orders.place.batch", description = "Group commit of a batch of queued orders", histogram = true)
+    @Transactional
+    public List<OrderOutcome> placeOrderBatch(List<QueuedOrder> batch) {
+        Set<Long> userIds = batch.stream().map(QueuedOrder::userId).collect(Collectors.toCollection(TreeSet::new));
+        // The pipeline thread has no signed-in user, so the buyers are marked as writers here for their
+        // reads of the new order to go to the primary
+        if (routingDataSource != null) {
+            routingDataSource.markRecentWriters(userIds);
+        }
+        if (writeBehindCartService != null) {
+            writeBehindCartService.flushForCheckout(userIds);
+        }
+        Map<Long, List<CartItem>> linesByUser = cartItemRepository.findByUserIdInForUpdate(userIds).stream()
+                .collect(Collectors.groupingBy(line -> line.getUser().getId()));
+        Set<Long> productIds = new TreeSet<>();
+        linesByUser.values().forEach(lines -> lines.forEach(line -> productIds.add(line.getProduct().getId())));
+        Map<Long, Product> products = productIds.isEmpty() ? Map.of()
+                : productRepository.findAllByIdInForUpdate(productIds).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+        // Available-to-promise per product from the hold rows, drawn down as orders are accepted; a line's own
+        // hold counts towards it
+        Map<Long, Integer> available = new HashMap<>();
+        products.values().forEach(product -> available.put(product.getId(), product.getStock()));
+        if (!productIds.isEmpty()) {
+            cartItemRepository.sumHeldByProductIdIn(productIds)
+                    .forEach(total -> available.merge(total.productId(), -total.units().intValue(), Integer::sum));
+        }
+
+        List<OrderOutcome> outcomes = new ArrayList<>(batch.size());
+        List<List<CartItem>> accepted = new ArrayList<>(batch.size());
+        Set<Long> taken = new HashSet<>();
+        Map<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Integer> held = new HashMap<>();
+        for (QueuedOrder queued : batch) {
+            List<Long> selectedProductIds = queued.request().getProductIds();
+            accepted.add(null);
+            if (selectedProductIds == null || selectedProductIds.isEmpty()) {
+                outcomes.add(OrderOutcome.refused("No products selected for order"));
+                continue;
+            }
+            // Lines taken by an earlier order of the same buyer are gone, as they would be one order at a time
+            List<CartItem> cartItems = linesByUser.getOrDefault(queued.userId(), List.of()).stream()
+                    .filter(item -> selectedProductIds.contains(item.getProduct().getId()) && !taken.contains(item.getId()))
+                    .toList();
+            if (cartItems.isEmpty()) {
+                outcomes.add(OrderOutcome.refused("No matching cart items found for selected products"));
+                continue;
+            }
+            Map<Long, Integer> needed = new TreeMap<>();
+            for (CartItem cartItem : cartItems) {
+                needed.merge(cartItem.getProduct().getId(), cartItem.getQuantity() - cartItem.getHeldQuantity(), Integer::sum);
+            }
+            Long shortProductId = needed.entrySet().stream()
+                    .filter(entry -> entry.getValue() > available.get(entry.getKey()))
+                    .map(Map.Entry::getKey)
+                    .findFirst().orElse(null);
+            if (shortProductId != null) {
+                outcomes.add(OrderOutcome.refused("Not enough stock for product: " + products.get(shortProductId).getName()));
+                continue;
+            }
+            needed.forEach((productId, units) -> available.merge(productId, -units, Integer::sum));
+            for (CartItem cartItem : cartItems) {
+                quantities.merge(cartItem.getProduct().getId(), cartItem.getQuantity(), Integer::sum);
+                held.merge(cartItem.getProduct().getId(), cartItem.getHeldQuantity(), Integer::sum);
+                taken.add(cartItem.getId());
+            }
+            accepted.set(accepted.size() - 1, cartItems);
+            outcomes.add(null);
+        }
+        if (quantities.isEmpty()) {
+            return outcomes;
+        }
+        // The products are locked, but a cart may have taken a hold since the allocation above; the batch
+        // then fails as a whole and AsyncOrderService places its orders one at a time
+        for (int updated : productRepository.decrementStock(quantities, held)) {
+            if (updated == 0) {
+                throw new IllegalStateException("Stock changed under a locked order batch");
+            }
+        }
+        stockReservationService.checkedOut(accepted.stream().filter(Objects::nonNull).flatMap(List::stream).toList());
+        for (int i = 0; i < batch.size(); i++) {
+            if (accepted.get(i) != null) {
+                QueuedOrder queued = batch.get(i);
+                Order order = createOrder(userRepository.getReferenceById(queued.userId()), queued.request(), accepted.get(i));
+                outcomes.set(i, new OrderOutcome(order.getId(), null));
+            }
+        }
+        cartItemRepository.deleteAllByIdInBatch(taken);
+        return outcomes;
+    }
+
+    // Saves the order with one item per cart line; with pooled ids nothing is written until flush, and the
+    // item inserts then go out as one JDBC batch
+    private Order createOrder(User user, PlaceOrderRequestDTO request, List<CartItem> cartItems) {
         Order order = new Order();
         order.setUser(user);
         order.setStatus("PENDING");
         order.setShippingAddress(request.getShippingAddress());
         order.setTotalAmount(request.getTotalAmount());
-        // 7. Save the order to generate its ID
         order = orderRepository.save(order);
-        // 8. For each cart item, check stock, update product stock, and create an OrderItem
         for (CartItem cartItem : cartItems) {
             Product product = cartItem.getProduct();
-            // 8a. Check if there is enough stock for the product
-            if (cartItem.getQuantity() > product.getStock()) {
-                throw new IllegalArgumentException("Not enough stock for product: " + product.getName());
-            }
-            // 8b. Deduct the ordered quantity from the product's stock
-            product.setStock(product.getStock() - cartItem.getQuantity());
-            productRepository.save(product);
-            // 8c. Create and save an OrderItem for this product
             OrderItem orderItem = new OrderItem();
             orderItem.setOrder(order);
             orderItem.setProduct(product);
@@ -80,117 +249,179 @@ public class OrderService {
             orderItem.setPrice(product.getPrice());
             orderItemRepository.save(orderItem);
         }
-        // 9. Remove the processed cart items from the user's cart
-        cartItemRepository.deleteAllByIdInBatch(cartItems.stream().map(CartItem::getId).toList());
-        // 10. Return the created order
         return order;
     }
 
+    // Same timer as placeOrder: the inner call is not proxied, so each order is timed once
+    @Timed(value = "orders.place", description = "Order placement including stock deduction", histogram = true)
     @Transactional
     public PlaceOrderResponseDTO placeOrderWithResponse(PlaceOrderRequestDTO request) {
         Order order = placeOrder(request);
         return new PlaceOrderResponseDTO(order.getId(), "Order placed successfully");
     }
 
+    @Transactional(readOnly = true)
     public List<Order> getAllOrders() {
         return orderRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public List<Order> getOrdersByUserId(Long userId) {
         User user = userRepository.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
         return orderRepository.findByUser(user);
     }
 
+    @Transactional(readOnly = true)
     public List<OrderResponseDTO> getAllOrdersSafe() {
-        return orderRepository.findAll().stream().map(order -> {
-            OrderResponseDTO dto = new OrderResponseDTO();
-            dto.setId(order.getId());
-            dto.setUserEmail(order.getUser().getEmail());
-            dto.setStatus(order.getStatus());
-            dto.setShippingAddress(order.getShippingAddress());
-            dto.setTotalAmount(order.getTotalAmount());
-            dto.setItems(order.getItems().stream().map(item -> {
-                OrderItemDTO itemDTO = new OrderItemDTO();
-                itemDTO.setId(item.getId());
-                itemDTO.setProductId(item.getProduct().getId());
-                itemDTO.setProductName(item.getProduct().getName());
-                itemDTO.setQuantity(item.getQuantity());
-                itemDTO.setPrice(item.getPrice());
-                itemDTO.setProductImage(item.getProduct().getImageUrl());
-                return itemDTO;
-            }).collect(Collectors.toList()));
-            return dto;
-        }).collect(Collectors.toList());
+        return toDTOs(orderRepository.findWithItems(null, null));
     }
 
+    @Transactional(readOnly = true)
     public List<OrderResponseDTO> getOrdersByUserIdSafe(Long userId) {
-        User user = userRepository.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
-        return orderRepository.findByUser(user).stream().map(order -> {
-            OrderResponseDTO dto = new OrderResponseDTO();
-            dto.setId(order.getId());
-            dto.setUserEmail(order.getUser().getEmail());
-            dto.setStatus(order.getStatus());
-            dto.setShippingAddress(order.getShippingAddress());
-            dto.setTotalAmount(order.getTotalAmount());
-            dto.setItems(order.getItems().stream().map(item -> {
-                OrderItemDTO itemDTO = new OrderItemDTO();
-                itemDTO.setId(item.getId());
-                itemDTO.setProductId(item.getProduct().getId());
-                itemDTO.setProductName(item.getProduct().getName());
-                itemDTO.setQuantity(item.getQuantity());
-                itemDTO.setPrice(item.getPrice());
-                itemDTO.setProductImage(item.getProduct().getImageUrl());
-                return itemDTO;
-            }).collect(Collectors.toList()));
-            return dto;
-        }).collect(Collectors.toList());
+        if (!userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("User not found");
+        }
+        return toDTOs(orderRepository.findWithItems(userId, null));
     }
 
+    @Transactional(readOnly = true)
     public List<OrderResponseDTO> getOrdersByStatusSafe(String status) {
-        return orderRepository.findByStatus(status).stream().map(order -> {
-            OrderResponseDTO dto = new OrderResponseDTO();
-            dto.setId(order.getId());
-            dto.setUserEmail(order.getUser().getEmail());
-            dto.setStatus(order.getStatus());
-            dto.setShippingAddress(order.getShippingAddress());
-            dto.setTotalAmount(order.getTotalAmount());
-            dto.setItems(order.getItems().stream().map(item -> {
-                OrderItemDTO itemDTO = new OrderItemDTO();
-                itemDTO.setId(item.getId());
-                itemDTO.setProductId(item.getProduct().getId());
-                itemDTO.setProductName(item.getProduct().getName());
-                itemDTO.setQuantity(item.getQuantity());
-                itemDTO.setPrice(item.getPrice());
-                itemDTO.setProductImage(item.getProduct().getImageUrl());
-                return itemDTO;
-            }).collect(Collectors.toList()));
-            return dto;
-        }).collect(Collectors.toList());
+        return toDTOs(orderRepository.findWithItems(null, status));
     }
 
+    @Transactional(readOnly = true)
     public List<OrderResponseDTO> getCurrentUserOrdersSafe() {
-        User user = getCurrentUser();
-        return orderRepository.findByUser(user).stream().map(order -> {
-            OrderResponseDTO dto = new OrderResponseDTO();
-            dto.setId(order.getId());
-            dto.setUserEmail(order.getUser().getEmail());
-            dto.setStatus(order.getStatus());
-            dto.setShippingAddress(order.getShippingAddress());
-            dto.setTotalAmount(order.getTotalAmount());
-            dto.setItems(order.getItems().stream().map(item -> {
-                OrderItemDTO itemDTO = new OrderItemDTO();
-                itemDTO.setId(item.getId());
-                itemDTO.setProductId(item.getProduct().getId());
-                itemDTO.setProductName(item.getProduct().getName());
-                itemDTO.setQuantity(item.getQuantity());
-                itemDTO.setPrice(item.getPrice());
-                itemDTO.setProductImage(item.getProduct().getImageUrl());
-                return itemDTO;
-            }).collect(Collectors.toList()));
-            return dto;
-        }).collect(Collectors.toList());
+        User user = AuthenticatedUser.currentUser(userRepository);
+        return toDTOs(orderRepository.findWithItems(user.getId(), null));
+    }
+
+    @Transactional(readOnly = true)
+    public OrderPageDTO getCurrentUserOrdersPage(String cursor, Integer limit) {
+        User user = AuthenticatedUser.currentUser(userRepository);
+        return getOrdersPage(user.getId(), cursor, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public OrderPageDTO getAllOrdersPage(String cursor, Integer limit) {
+        return getOrdersPage(null, cursor, limit);
+    }
+
+    // Two bounded statements per page whatever the history size: a keyset scan for ids, then a fetch join for the page
+    private OrderPageDTO getOrdersPage(Long userId, String cursor, Integer limit) {
+        int pageLimit = limit != null ? limit : DEFAULT_PAGE_LIMIT;
+        if (pageLimit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        pageLimit = Math.min(pageLimit, MAX_PAGE_LIMIT);
+        Instant beforeCreatedAt = FIRST_PAGE_CREATED_AT;
+        Long beforeId = Long.MAX_VALUE;
+        if (cursor != null) {
+            String[] parts = decodeCursor(cursor);
+            beforeCreatedAt = Instant.parse(parts[0]);
+            beforeId = Long.parseLong(parts[1]);
+        }
+        List<Long> ids = userId != null
+                ? orderRepository.findIdsByUserBefore(userId, beforeCreatedAt, beforeId, Limit.of(pageLimit + 1))
+                : orderRepository.findIdsBefore(beforeCreatedAt, beforeId, Limit.of(pageLimit + 1));
+        boolean hasMore = ids.size() > pageLimit;
+        List<Long> pageIds = hasMore ? ids.subList(0, pageLimit) : ids;
+        if (pageIds.isEmpty()) {
+            return new OrderPageDTO(List.of(), null);
+        }
+        Map<Long, Order> byId = orderRepository.findWithItemsByIds(pageIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        List<Order> orders = pageIds.stream().map(byId::get).toList();
+        Order last = orders.get(orders.size() - 1);
+        return new OrderPageDTO(toDTOs(orders), hasMore ? encodeCursor(last) : null);
     }
 
+    private static String encodeCursor(Order order) {
+        String raw = order.getCreatedAt() + "|" + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            Instant.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // Hands orders to the consumer one at a time, oldest first, reading flat order/item rows from a
+    // forward-only cursor so memory use does not depend on how many orders match.
+    @Transactional(readOnly = true)
+    public void exportOrders(String status, Instant from, Instant to, Consumer<OrderResponseDTO> consumer) {
+        StringBuilder hql = new StringBuilder("select o.id, o.createdAt, u.email, o.status, o.totalAmount, o.shippingAddress, " +
+                "i.id, p.id, p.name, p.imageUrl, i.quantity, i.price " +
+                "from Order o join o.user u left join o.items i left join i.product p where 1 = 1");
+        if (status != null) {
+            hql.append(" and o.status = :status");
+        }
+        if (from != null) {
+            hql.append(" and o.createdAt >= :from");
+        }
+        if (to != null) {
+            hql.append(" and o.createdAt < :to");
+        }
+        hql.append(" order by o.createdAt, o.id, i.id");
+        Session session = entityManager.unwrap(Session.class);
+        SelectionQuery<Object[]> query = session.createSelectionQuery(hql.toString(), Object[].class)
+                .setFetchSize(EXPORT_FETCH_SIZE)
+                .setReadOnly(true);
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        try (ScrollableResults<Object[]> rows = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            OrderResponseDTO current = null;
+            int rowCount = 0;
+            while (rows.next()) {
+                Object[] row = rows.get();
+                Long orderId = (Long) row[0];
+                if (current == null || !current.getId().equals(orderId)) {
+                    if (current != null) {
+                        consumer.accept(current);
+                    }
+                    current = new OrderResponseDTO();
+                    current.setId(orderId);
+                    current.setCreatedAt((Instant) row[1]);
+                    current.setUserEmail((String) row[2]);
+                    current.setStatus((String) row[3]);
+                    current.setTotalAmount((BigDecimal) row[4]);
+                    current.setShippingAddress((String) row[5]);
+                    current.setItems(new ArrayList<>());
+                }
+                if (row[6] != null) {
+                    OrderItemDTO itemDTO = new OrderItemDTO();
+                    itemDTO.setId((Long) row[6]);
+                    itemDTO.setProductId((Long) row[7]);
+                    itemDTO.setProductName((String) row[8]);
+                    itemDTO.setProductImage((String) row[9]);
+                    itemDTO.setQuantity((Integer) row[10]);
+                    itemDTO.setPrice((BigDecimal) row[11]);
+                    current.getItems().add(itemDTO);
+                }
+                // Rows are scalar projections, but clear anyway so nothing loaded along the way can pile up
+                if (++rowCount % EXPORT_FETCH_SIZE == 0) {
+                    session.clear();
+                }
+            }
+            if (current != null) {
+                consumer.accept(current);
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
     public boolean isOrderOwner(Long orderId, String email) {
         Order order = orderRepository.findById(orderId).orElseThrow(() -> new IllegalArgumentException("Order not found"));
         return order.getUser().getEmail().equals(email);
@@ -201,12 +432,14 @@ public class OrderService {
         orderRepository.deleteById(orderId);
     }
 
+    @Transactional
     public void cancelOrder(Long orderId) {
         Order order = orderRepository.findById(orderId).orElseThrow(() -> new IllegalArgumentException("Order not found"));
         order.setStatus("CANCELLED");
         orderRepository.save(order);
     }
 
+    @Transactional
     public void updateOrderStatus(Long orderId, String status) {
         Order order = orderRepository.findById(orderId).orElseThrow(() -> new IllegalArgumentException("Order not found"));
         order.setStatus(status);
@@ -215,10 +448,36 @@ public class OrderService {
 
     @Transactional
     public void markOrderDeliveredByUser(Long orderId) {
-        String userEmail = getCurrentUser().getEmail();
-        if (!isOrderOwner(orderId, userEmail)) {
+        Long userId = AuthenticatedUser.currentUserId(userRepository);
+        Order order = orderRepository.findById(orderId).orElseThrow(() -> new IllegalArgumentException("Order not found"));
+        if (!order.getUser().getId().equals(userId)) {
             throw new IllegalArgumentException("You can only mark your own orders as delivered");
         }
-        updateOrderStatus(orderId, "DELIVERED");
+        order.setStatus("DELIVERED");
+        orderRepository.save(order);
+    }
+
+    // Expects orders loaded through findWithItems so walking items and products issues no queries
+    List<OrderResponseDTO> toDTOs(List<Order> orders) {
+        return orders.stream().map(order -> {
+            OrderResponseDTO dto = new OrderResponseDTO();
+            dto.setId(order.getId());
+            dto.setUserEmail(order.getUser().getEmail());
+            dto.setStatus(order.getStatus());
+            dto.setShippingAddress(order.getShippingAddress());
+            dto.setTotalAmount(order.getTotalAmount());
+            dto.setCreatedAt(order.getCreatedAt());
+            dto.setItems(order.getItems().stream().map(item -> {
+                OrderItemDTO itemDTO = new OrderItemDTO();
+                itemDTO.setId(item.getId());
+                itemDTO.setProductId(item.getProduct().getId());
+                itemDTO.setProductName(item.getProduct().getName());
+                itemDTO.setQuantity(item.getQuantity());
+                itemDTO.setPrice(item.getPrice());
+                itemDTO.setProductImage(item.getProduct().getImageUrl());
+                return itemDTO;
+            }).collect(Collectors.toList()));
+            return dto;
+        }).collect(Collectors.toList());
     }
 }
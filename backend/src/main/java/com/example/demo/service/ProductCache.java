@@ -0,0 +1,61 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ReadWriteRoutingDataSource;
+import com.example.demo.config.SecondLevelCacheStatistics;
+import com.example.demo.dto.CacheStatsDTO;
+import com.example.demo.entity.Product;
+import com.example.demo.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-through cache of products by id, bounded by size and time-to-live. Its entries live in the
+ * Hibernate second-level cache region "product", so there is one copy of each product and one way to
+ * invalidate it: Hibernate updates the region on entity writes (admin update and delete), and the stock
+ * UPDATEs in ProductStockRepositoryImpl evict the rows they touch.
+ * <p>
+ * Entries are shared between requests and must not be modified by callers outside a transaction.
+ */
+@Component
+public class ProductCache {
+    static final String REGION = "product";
+
+    private final ProductRepository productRepository;
+    // Null when the second-level cache is switched off; every lookup then reads the database
+    private final Cache<?, ?> region;
+
+    @Autowired
+    public ProductCache(ProductRepository productRepository,
+                        EntityManagerFactory entityManagerFactory,
+                        @Value("${product.cache.max-size:10000}") long maxSize,
+                        @Value("${product.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.productRepository = productRepository;
+        this.region = SecondLevelCacheStatistics.region(entityManagerFactory, REGION);
+        if (region != null) {
+            region.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maxSize));
+            region.policy().expireAfterWrite().ifPresent(expiry -> expiry.setExpiresAfter(Duration.ofSeconds(ttlSeconds)));
+        }
+    }
+
+    public Optional<Product> get(Long id) {
+        // Missing products are not cached, so a product created later is visible immediately.
+        // Misses read the primary: a lagging replica would re-cache the row an update just evicted.
+        return ReadWriteRoutingDataSource.onPrimary(() -> productRepository.findById(id));
+    }
+
+    public CacheStatsDTO getStats() {
+        return region != null ? SecondLevelCacheStatistics.toStats(region) : new CacheStatsDTO();
+    }
+
+    void cleanUp() {
+        if (region != null) {
+            region.cleanUp();
+        }
+    }
+}
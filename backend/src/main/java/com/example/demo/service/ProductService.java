@@ -1,25 +1,49 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CacheStatsDTO;
+import com.example.demo.dto.ProductCursorPageDTO;
 import com.example.demo.dto.ProductDTO;
 import com.example.demo.entity.Category;
 import com.example.demo.entity.Product;
 import com.example.demo.repository.CategoryRepository;
 import com.example.demo.repository.ProductRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
+    public static final int DEFAULT_PAGE_LIMIT = 50;
+    public static final int MAX_PAGE_LIMIT = 200;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     @Autowired
     private ProductRepository productRepository;
     @Autowired
     private CategoryRepository categoryRepository;
+    @Autowired
+    private ProductSearchIndex searchIndex;
+    @Autowired
+    private ProductCache productCache;
 
+    @Transactional
     public Product addProduct(ProductDTO dto, MultipartFile imageFile) {
         Category category = categoryRepository.findById(dto.categoryId.longValue())
                 .orElseThrow(() -> new IllegalArgumentException("Category not found"));
@@ -43,9 +67,12 @@ public class ProductService {
             product.setImageUrl(dto.imageUrl);
         }
         product.setCategory(category);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        searchIndex.indexAfterCommit(saved);
+        return saved;
     }
 
+    @Transactional
     public Product updateProduct(Long id, ProductDTO dto, MultipartFile imageFile) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Product not found"));
@@ -70,30 +97,75 @@ public class ProductService {
             product.setImageUrl(dto.imageUrl);
         }
         product.setCategory(category);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        searchIndex.indexAfterCommit(saved);
+        return saved;
     }
 
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    @Transactional(readOnly = true)
+    public ProductCursorPageDTO getProductsAfter(Long afterId, Integer limit) {
+        int pageLimit = limit != null ? limit : DEFAULT_PAGE_LIMIT;
+        if (pageLimit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        pageLimit = Math.min(pageLimit, MAX_PAGE_LIMIT);
+        // Fetch one extra row to learn whether another page exists without a COUNT query
+        List<Product> rows = productRepository.findPageAfter(afterId != null ? afterId : 0L, Limit.of(pageLimit + 1));
+        if (rows.size() <= pageLimit) {
+            return new ProductCursorPageDTO(rows, null);
+        }
+        List<Product> items = rows.subList(0, pageLimit);
+        return new ProductCursorPageDTO(items, items.get(pageLimit - 1).getId());
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllProducts(Consumer<Product> consumer) {
+        try (Stream<Product> products = productRepository.streamAllOrderById()) {
+            products.forEach(product -> {
+                consumer.accept(product);
+                // Drop each row from the persistence context once written so memory stays flat
+                entityManager.detach(product);
+            });
+        }
     }
 
     public Product getProductById(Long id) {
-        return productRepository.findById(id)
+        return productCache.get(id)
                 .orElseThrow(() -> new IllegalArgumentException("Product not found"));
     }
 
+    public CacheStatsDTO getCacheStats() {
+        return productCache.getStats();
+    }
+
+    @Transactional(readOnly = true)
     public Page<Product> getProductsByCategory(Long categoryId, int page, int size) {
         return productRepository.findByCategoryId(categoryId, PageRequest.of(page, size));
     }
 
+    @Timed(value = "products.search", description = "Product search including hydration", histogram = true)
+    @Transactional(readOnly = true)
     public Page<Product> searchProducts(String query, int page, int size) {
-        return productRepository.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(query, query, PageRequest.of(page, size));
+        PageRequest pageable = PageRequest.of(page, size);
+        if (!searchIndex.isReady()) {
+            // Index is still being built at startup
+            return productRepository.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(query, query, pageable);
+        }
+        List<Long> hits = searchIndex.search(query);
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        List<Long> pageIds = hits.subList(from, Math.min(from + size, hits.size()));
+        Map<Long, Product> byId = productRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> content = pageIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, hits.size());
     }
 
+    @Transactional
     public void deleteProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Product not found"));
         productRepository.delete(product);
+        searchIndex.removeAfterCommit(id);
     }
 
     private String resolveUploadDir() {
@@ -0,0 +1,355 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.HeldStockDTO;
+import com.example.demo.entity.CartItem;
+import com.example.demo.entity.Product;
+import com.example.demo.repository.CartItemRepository;
+import com.example.demo.util.HierarchicalTimingWheel;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-bounded stock holds for cart lines. A line's hold is kept on the cart row (held_quantity,
+ * hold_expires_at) and nowhere else in the database, so taking or giving back a hold never writes the
+ * product row. The units held per product are totalled in memory here, and available-to-promise is the
+ * product's stock (from the second-level cache) less that total. Checkout reconciles against the hold
+ * rows themselves: its stock UPDATE sums them (see ProductStockRepository).
+ * <p>
+ * The totals start from the hold rows and are reloaded from them after every periodic sweep. Between
+ * sweeps they only see the holds taken on this instance, so with several instances two carts may be
+ * promised the same units for up to one sweep interval; checkout then refuses whichever comes second.
+ * <p>
+ * Holds taken here are scheduled on a hierarchical timing wheel by line id, and each tick releases what
+ * came due in one transaction per batch. The wheel is only a hint: a line is released only if its stored
+ * expiry has passed, since a later cart change may have extended it. A periodic sweep picks up holds the
+ * wheel never saw, such as those taken before a restart or by another instance. Each release publishes
+ * {@link HoldsReleased} so copies of the cart kept in memory can follow.
+ */
+@Component
+public class StockReservationService implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationService.class);
+    static final int RELEASE_BATCH_SIZE = 500;
+
+    private final CartItemRepository cartItemRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final long tickMs;
+    private final long sweepIntervalSeconds;
+    private final HierarchicalTimingWheel<Long> wheel;
+    private final AtomicLong released = new AtomicLong();
+    // Units held per product; products nobody holds have no entry
+    private final ConcurrentHashMap<Long, Integer> heldByProduct = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public StockReservationService(CartItemRepository cartItemRepository,
+                                   ApplicationEventPublisher eventPublisher,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${app.reservations.ttl-seconds:900}") long ttlSeconds,
+                                   @Value("${app.reservations.wheel.tick-ms:1000}") long tickMs,
+                                   @Value("${app.reservations.wheel.size:64}") int wheelSize,
+                                   @Value("${app.reservations.sweep-interval-seconds:60}") long sweepIntervalSeconds) {
+        if (ttlSeconds <= 0) {
+            throw new IllegalArgumentException("app.reservations.ttl-seconds must be positive");
+        }
+        this.cartItemRepository = cartItemRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.tickMs = tickMs;
+        this.sweepIntervalSeconds = sweepIntervalSeconds;
+        this.wheel = new HierarchicalTimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+    }
+
+    @PostConstruct
+    void start() {
+        reloadHeld();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::releaseDue, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        // 0 turns the sweep off, leaving only the holds this instance scheduled
+        if (sweepIntervalSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(this::sweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /** What a new hold, or an order placed without one, can still take of the product. */
+    public int availableToPromise(Product product) {
+        return product.getStock() - heldStock(product.getId());
+    }
+
+    /** Units of the product held by all carts. */
+    public int heldStock(Long productId) {
+        return heldByProduct.getOrDefault(productId, 0);
+    }
+
+    /**
+     * Sets each line's hold to its quantity, taking or giving back the difference and restarting the TTL,
+     * and gives back the whole hold of each removed line. Lines must have been read with one of the
+     * locking finders in CartItemRepository. Throws when a product cannot cover the extra units; the
+     * caller's transaction then rolls back whatever was taken.
+     */
+    public void hold(Collection<CartItem> lines, Collection<CartItem> removed) {
+        moveHolds(lines, removed, false);
+    }
+
+    /**
+     * As {@link #hold}, for quantities that were already accepted (the write-behind cart flush): a line
+     * whose extra units are no longer available keeps the hold it had rather than failing the rest.
+     * Checkout checks such a line against available stock again.
+     */
+    public void holdAvailable(Collection<CartItem> lines, Collection<CartItem> removed) {
+        moveHolds(lines, removed, true);
+    }
+
+    public void release(Collection<CartItem> removed) {
+        hold(List.of(), removed);
+    }
+
+    /**
+     * Drops the holds of lines that checkout has turned into a stock deduction. The lines themselves are
+     * deleted by the caller, so they are left as they are.
+     */
+    public void checkedOut(Collection<CartItem> lines) {
+        Map<Long, Integer> returned = new HashMap<>();
+        lines.forEach(line -> addUnits(returned, line, line.getHeldQuantity()));
+        settle(Map.of(), returned);
+    }
+
+    /**
+     * Releases the holds among these lines that have expired by {@code now}, in one transaction.
+     * Returns how many lines were released.
+     */
+    public int releaseExpired(Collection<Long> lineIds, Instant now) {
+        Integer count = transactionTemplate.execute(status -> {
+            List<CartItem> lines = cartItemRepository.findWithHoldExpiredByForUpdate(lineIds, now);
+            if (lines.isEmpty()) {
+                return 0;
+            }
+            Map<Long, Integer> returned = new HashMap<>();
+            Map<Long, Set<Long>> productIdsByUser = new HashMap<>();
+            for (CartItem line : lines) {
+                addUnits(returned, line, line.getHeldQuantity());
+                productIdsByUser.computeIfAbsent(line.getUser().getId(), key -> new HashSet<>()).add(line.getProduct().getId());
+                line.setHeldQuantity(0);
+                line.setHoldExpiresAt(null);
+            }
+            settle(Map.of(), returned);
+            eventPublisher.publishEvent(new HoldsReleased(productIdsByUser));
+            return lines.size();
+        });
+        released.addAndGet(count);
+        return count;
+    }
+
+    /** Releases every hold that expired by {@code now}, one transaction per batch. Returns how many. */
+    public int sweepExpired(Instant now) {
+        int total = 0;
+        while (true) {
+            // Inside a read-write transaction so the ids come from the primary
+            List<Long> ids = transactionTemplate.execute(status ->
+                    cartItemRepository.findIdsWithHoldExpiredBy(now, Limit.of(RELEASE_BATCH_SIZE)));
+            if (!ids.isEmpty()) {
+                total += releaseExpired(ids, now);
+            }
+            if (ids.size() < RELEASE_BATCH_SIZE) {
+                return total;
+            }
+        }
+    }
+
+    /** Replaces the in-memory totals with the sums of the hold rows, picking up other instances' holds. */
+    public void reloadHeld() {
+        List<HeldStockDTO> totals = transactionTemplate.execute(status -> cartItemRepository.sumHeldByProduct());
+        Map<Long, Integer> loaded = new HashMap<>();
+        totals.forEach(total -> loaded.put(total.productId(), total.units().intValue()));
+        heldByProduct.keySet().retainAll(loaded.keySet());
+        heldByProduct.putAll(loaded);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stock.holds.scheduled", wheel, HierarchicalTimingWheel::size)
+                .description("Stock holds waiting on the expiry wheel")
+                .register(registry);
+        FunctionCounter.builder("stock.holds.released", released, AtomicLong::get)
+                .description("Expired stock holds given back to available stock")
+                .register(registry);
+    }
+
+    // Extra units are taken from the totals one line at a time, each only if the product still has them
+    private void moveHolds(Collection<CartItem> lines, Collection<CartItem> removed, boolean keepRefused) {
+        // Whole milliseconds, as on the wheel, so the stored expiry compares equal to the scheduled one
+        Instant expiresAt = Instant.now().plus(ttl).truncatedTo(ChronoUnit.MILLIS);
+        Map<Long, Integer> taken = new HashMap<>();
+        Map<Long, Integer> returned = new HashMap<>();
+        try {
+            for (CartItem line : lines) {
+                int delta = line.getQuantity() - line.getHeldQuantity();
+                if (delta > 0 && !take(line.getProduct(), delta)) {
+                    if (!keepRefused) {
+                        throw new IllegalArgumentException("Requested quantity exceeds available stock.");
+                    }
+                    // The line keeps the hold it had
+                } else {
+                    addUnits(delta > 0 ? taken : returned, line, Math.abs(delta));
+                    line.setHeldQuantity(line.getQuantity());
+                }
+                line.setHoldExpiresAt(expiresAt);
+            }
+        } catch (RuntimeException e) {
+            // Such as a line whose product was deleted; what the earlier lines took goes back at once
+            giveBack(taken);
+            throw e;
+        }
+        for (CartItem line : removed) {
+            addUnits(returned, line, line.getHeldQuantity());
+            line.setHeldQuantity(0);
+            line.setHoldExpiresAt(null);
+        }
+        settle(taken, returned);
+        scheduleAfterCommit(List.copyOf(lines), expiresAt);
+    }
+
+    private boolean take(Product product, int units) {
+        boolean[] taken = {false};
+        heldByProduct.compute(product.getId(), (id, held) -> {
+            int current = held == null ? 0 : held;
+            if (product.getStock() - current < units) {
+                return held;
+            }
+            taken[0] = true;
+            return current + units;
+        });
+        return taken[0];
+    }
+
+    private void giveBack(Map<Long, Integer> units) {
+        units.forEach((productId, count) ->
+                heldByProduct.computeIfPresent(productId, (id, held) -> held > count ? held - count : null));
+    }
+
+    // The totals move at once, so later holds on this instance see them; a rollback moves them back
+    private void settle(Map<Long, Integer> taken, Map<Long, Integer> returned) {
+        giveBack(returned);
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !(taken.isEmpty() && returned.isEmpty())) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        giveBack(taken);
+                        returned.forEach((productId, count) -> heldByProduct.merge(productId, count, Integer::sum));
+                    }
+                }
+            });
+        }
+    }
+
+    private static void addUnits(Map<Long, Integer> units, CartItem line, int count) {
+        if (count > 0) {
+            units.merge(line.getProduct().getId(), count, Integer::sum);
+        }
+    }
+
+    // Scheduled only once committed: a rolled-back hold never happened, and new lines have their ids by then
+    private void scheduleAfterCommit(List<CartItem> lines, Instant expiresAt) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Runnable schedule = () -> {
+            List<Long> due = new ArrayList<>();
+            for (CartItem line : lines) {
+                if (!wheel.schedule(line.getId(), expiresAt.toEpochMilli())) {
+                    due.add(line.getId());
+                }
+            }
+            // Too close to expiry for the wheel (a short TTL, or a slow commit): released on the expiry
+            // thread once the hold runs out, which may already be now
+            if (!due.isEmpty()) {
+                long delayMs = Math.max(0, expiresAt.toEpochMilli() - System.currentTimeMillis());
+                scheduler.schedule(() -> releaseDue(due, expiresAt), delayMs, TimeUnit.MILLISECONDS);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule.run();
+                }
+            });
+        } else {
+            schedule.run();
+        }
+    }
+
+    private void releaseDue() {
+        releaseDue(wheel.advance(System.currentTimeMillis()), Instant.now());
+    }
+
+    private void releaseDue(List<Long> due, Instant now) {
+        try {
+            for (int from = 0; from < due.size(); from += RELEASE_BATCH_SIZE) {
+                releaseExpired(due.subList(from, Math.min(from + RELEASE_BATCH_SIZE, due.size())), now);
+            }
+        } catch (RuntimeException e) {
+            // The ids have left the wheel either way; the periodic sweep releases them later
+            logger.warn("Releasing expired stock holds failed", e);
+        }
+    }
+
+    private void sweep() {
+        try {
+            int count = sweepExpired(Instant.now());
+            if (count > 0) {
+                logger.info("Periodic sweep released {} expired stock holds", count);
+            }
+            reloadHeld();
+        } catch (RuntimeException e) {
+            logger.warn("Sweeping expired stock holds failed", e);
+        }
+    }
+
+    /** Expired holds given back in one transaction: the products whose line lost its hold, by cart owner. */
+    public record HoldsReleased(Map<Long, Set<Long>> productIdsByUser) {
+    }
+}
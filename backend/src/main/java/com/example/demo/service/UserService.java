@@ -6,6 +6,7 @@ import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -15,6 +16,7 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Transactional(readOnly = true)
     public UserProfileDTO getUserProfile(String email) {
         User user = userRepository.findByEmail(email).orElseThrow();
         UserProfileDTO dto = new UserProfileDTO();
@@ -26,6 +28,7 @@ public class UserService {
         return dto;
     }
 
+    @Transactional
     public UserProfileDTO updateUserProfile(String email, UserProfileUpdateDTO updateDTO) {
         User user = userRepository.findByEmail(email).orElseThrow();
         user.setName(updateDTO.getName());
@@ -34,6 +37,7 @@ public class UserService {
         return getUserProfile(email);
     }
 
+    @Transactional(readOnly = true)
     public List<UserProfileDTO> getAllUsers() {
         return userRepository.findAll().stream().map(user -> {
             UserProfileDTO dto = new UserProfileDTO();
@@ -46,6 +50,7 @@ public class UserService {
         }).collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public UserProfileDTO getUserById(Long id) {
         User user = userRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("User not found"));
         UserProfileDTO dto = new UserProfileDTO();
@@ -57,6 +62,7 @@ public class UserService {
         return dto;
     }
 
+    @Transactional
     public UserProfileDTO updateUserByAdmin(Long id, UserProfileDTO updateDTO) {
         User user = userRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("User not found"));
         user.setName(updateDTO.getName());
@@ -66,6 +72,7 @@ public class UserService {
         return getUserById(id);
     }
 
+    @Transactional
     public void deleteUser(Long id) {
         User user = userRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("User not found"));
         userRepository.delete(user);
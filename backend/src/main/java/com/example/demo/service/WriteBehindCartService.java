@@ -0,0 +1,517 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ReadWriteRoutingDataSource;
+import com.example.demo.dto.CartDTO;
+import com.example.demo.dto.CartItemResponseDTO;
+import com.example.demo.dto.CartLineDTO;
+import com.example.demo.dto.CartOperationDTO;
+import com.example.demo.entity.CartItem;
+import com.example.demo.entity.Product;
+import com.example.demo.repository.CartItemRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind cart mode (app.cart.write-behind.enabled). Carts are read and changed in a CartStore keyed
+ * by user id without touching the database. Changed carts are marked dirty, and a background flusher
+ * writes them to cart_items every flush-interval-ms, up to batch-size carts per transaction. Only a cart's
+ * latest state is written, so a burst of quantity changes costs a single row update.
+ * <p>
+ * A change is checked against available stock from ProductCache when it is made; the stock hold itself is
+ * taken at flush. If another cart claimed the units in between, the line keeps the hold it had and checkout
+ * checks it again. Checkout writes the buyer's pending changes in its own transaction, and shutdown writes
+ * everything still pending.
+ * <p>
+ * If a batch fails, its carts are written again one per transaction, so one bad cart does not hold back
+ * the rest. Lines for products deleted since they were added are dropped first; a cart that still cannot
+ * be written stays pending and is tried again on the next pass.
+ * <p>
+ * When an expired hold is released, the stored cart no longer counts it: a cart with nothing pending is
+ * dropped and read again, and a pending one has the hold cleared until its next write.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindCartService implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindCartService.class);
+    private static final int LOCK_STRIPES = 64;
+
+    private final CartStore cartStore;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final ProductCache productCache;
+    private final StockReservationService stockReservationService;
+    private final TransactionTemplate transactionTemplate;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final long idleEvictMs;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Long, Long> lastAccess = new ConcurrentHashMap<>();
+    // A cart is changed and written under its user's stripe, so a flush never interleaves with a change or a checkout
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final AtomicLong flushedCarts = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public WriteBehindCartService(CartStore cartStore,
+                                  CartItemRepository cartItemRepository,
+                                  ProductRepository productRepository,
+                                  UserRepository userRepository,
+                                  ProductCache productCache,
+                                  StockReservationService stockReservationService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.cart.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                  @Value("${app.cart.write-behind.batch-size:100}") int batchSize,
+                                  @Value("${app.cart.write-behind.idle-evict-seconds:1800}") long idleEvictSeconds) {
+        this.cartStore = cartStore;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.productCache = productCache;
+        this.stockReservationService = stockReservationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushIntervalMs = flushIntervalMs;
+        this.batchSize = batchSize;
+        this.idleEvictMs = TimeUnit.SECONDS.toMillis(idleEvictSeconds);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushInBackground, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::evictIdle, 60, 60, TimeUnit.SECONDS);
+    }
+
+    // Runs before the repositories and the datasource are closed, since this bean depends on them
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        int flushed = flushPending();
+        logger.info("Wrote {} pending carts on shutdown", flushed);
+        if (!dirty.isEmpty()) {
+            logger.error("{} carts could not be written on shutdown, their changes are lost", dirty.size());
+        }
+    }
+
+    public CartDTO getCart() {
+        return toCart(load(AuthenticatedUser.currentUserId(userRepository)));
+    }
+
+    public void addItemToCart(Long productId, Integer quantity) {
+        change(AuthenticatedUser.currentUserId(userRepository), (current, cart) -> {
+            CartLineDTO line = cart.get(productId);
+            cart.put(productId, lineFor(current, productId, CartService.addQuantity(line != null ? line.quantity() : 0, quantity)));
+        });
+    }
+
+    public void updateCartItem(Long productId, Integer quantity) {
+        CartService.checkQuantity(quantity);
+        change(AuthenticatedUser.currentUserId(userRepository), (current, cart) -> {
+            if (!cart.containsKey(productId)) {
+                throw new IllegalArgumentException("Product not in cart: " + productId);
+            }
+            cart.put(productId, lineFor(current, productId, quantity));
+        });
+    }
+
+    public void removeCartItem(Long productId) {
+        productCache.get(productId).orElseThrow(() -> new IllegalArgumentException("Product not found."));
+        change(AuthenticatedUser.currentUserId(userRepository), (current, cart) -> cart.remove(productId));
+    }
+
+    // Same batch rules as CartService.applyOperations: applied in order, then checked as a whole
+    public CartDTO applyOperations(List<CartOperationDTO> operations) {
+        CartService.validateOperations(operations);
+        Map<Long, CartLineDTO> stored = change(AuthenticatedUser.currentUserId(userRepository), (current, cart) -> {
+            for (CartOperationDTO operation : operations) {
+                Long productId = operation.getProductId();
+                if (operation.getOp() == CartOperationDTO.Op.REMOVE) {
+                    cart.remove(productId);
+                    continue;
+                }
+                CartLineDTO line = cart.get(productId);
+                int quantity = operation.getOp() == CartOperationDTO.Op.ADD
+                        ? CartService.addQuantity(line != null ? line.quantity() : 0, operation.getQuantity())
+                        : operation.getQuantity();
+                cart.put(productId, lineFor(current, productId, quantity));
+            }
+        });
+        return toCart(stored);
+    }
+
+    /**
+     * Writes the user's pending changes inside the caller's transaction, before checkout reads the cart.
+     * The cart stays locked until that transaction completes. On commit the stored copy is dropped, as the
+     * order has just changed cart_items; on rollback the changes stay pending.
+     */
+    public void flushForCheckout(Long userId) {
+        flushForCheckout(List.of(userId));
+    }
+
+    /** As {@link #flushForCheckout(Long)} for a batch of buyers (group checkout), written together. */
+    public void flushForCheckout(Collection<Long> userIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Checkout flush must run inside the checkout transaction");
+        }
+        List<Long> pending = new ArrayList<>();
+        // Stripes are taken in index order, so two checkouts covering several carts cannot deadlock
+        List<Long> ordered = userIds.stream().distinct()
+                .sorted(Comparator.comparingInt((Long userId) -> Math.floorMod(userId.hashCode(), LOCK_STRIPES)))
+                .toList();
+        for (Long userId : ordered) {
+            ReentrantLock lock = lockFor(userId);
+            lock.lock();
+            boolean dirtyCart = dirty.remove(userId);
+            if (dirtyCart) {
+                pending.add(userId);
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            cartStore.remove(userId);
+                            lastAccess.remove(userId);
+                        } else if (dirtyCart) {
+                            dirty.add(userId);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+        }
+        if (!pending.isEmpty()) {
+            writeCarts(pending);
+            flushedCarts.addAndGet(pending.size());
+        }
+    }
+
+    /** Writes every pending cart now, batch-size carts per transaction. Returns how many were written. */
+    public int flushPending() {
+        int flushed = 0;
+        // Carts that failed on their own in this call are left for the next one
+        Set<Long> failed = new HashSet<>();
+        while (true) {
+            List<Long> batch = new ArrayList<>();
+            List<ReentrantLock> held = new ArrayList<>();
+            for (Iterator<Long> it = dirty.iterator(); it.hasNext() && batch.size() < batchSize; ) {
+                Long userId = it.next();
+                if (failed.contains(userId)) {
+                    continue;
+                }
+                ReentrantLock lock = lockFor(userId);
+                // A cart being changed or checked out right now is picked up on a later pass
+                if (!lock.tryLock()) {
+                    continue;
+                }
+                if (dirty.remove(userId)) {
+                    batch.add(userId);
+                    held.add(lock);
+                } else {
+                    lock.unlock();
+                }
+            }
+            if (batch.isEmpty()) {
+                return flushed;
+            }
+            try {
+                Map<Long, List<CartItem>> written = transactionTemplate.execute(status -> writeCarts(batch));
+                written.forEach(this::refreshStoredLines);
+                flushed += batch.size();
+                flushedCarts.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                logger.warn("Writing a batch of {} carts failed, writing them one at a time", batch.size(), e);
+                for (Long userId : batch) {
+                    if (flushAlone(userId)) {
+                        flushed++;
+                    } else {
+                        dirty.add(userId);
+                        failed.add(userId);
+                    }
+                }
+            } finally {
+                held.forEach(ReentrantLock::unlock);
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("carts.pending", dirty, Set::size)
+                .description("Carts with changes not yet written to the database")
+                .register(registry);
+        Gauge.builder("carts.stored", cartStore, CartStore::size)
+                .description("Carts held in the write-behind cart store")
+                .register(registry);
+        FunctionCounter.builder("carts.flushed", flushedCarts, AtomicLong::get)
+                .description("Cart writes from the write-behind cart store")
+                .register(registry);
+        FunctionCounter.builder("carts.flush.failures", failedFlushes, AtomicLong::get)
+                .description("Write-behind batches that failed and were retried")
+                .register(registry);
+    }
+
+    // Runs once the release has committed, so a cart read again from cart_items sees it
+    @TransactionalEventListener
+    void onHoldsReleased(StockReservationService.HoldsReleased event) {
+        event.productIdsByUser().forEach((userId, productIds) -> {
+            ReentrantLock lock = lockFor(userId);
+            lock.lock();
+            try {
+                if (!dirty.contains(userId)) {
+                    cartStore.remove(userId);
+                    return;
+                }
+                cartStore.update(userId, cart -> {
+                    if (cart == null) {
+                        return null;
+                    }
+                    Map<Long, CartLineDTO> released = new LinkedHashMap<>(cart);
+                    for (Long productId : productIds) {
+                        released.computeIfPresent(productId, (key, line) -> line.withHeldQuantity(0));
+                    }
+                    return released;
+                });
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    // Applies the edit to a copy of the user's cart, checks stock for the lines it changed and stores the result
+    private Map<Long, CartLineDTO> change(Long userId, CartEdit edit) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            Map<Long, CartLineDTO> current = load(userId);
+            Map<Long, CartLineDTO> cart = new LinkedHashMap<>(current);
+            edit.apply(current, cart);
+            for (CartLineDTO line : cart.values()) {
+                CartLineDTO before = current.get(line.productId());
+                if (before == null || before.quantity() != line.quantity()) {
+                    checkStock(line);
+                }
+            }
+            Map<Long, CartLineDTO> stored = cartStore.update(userId, ignored -> cart);
+            dirty.add(userId);
+            return stored;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The line's own hold counts as available to it, as on the database path
+    private void checkStock(CartLineDTO line) {
+        Product product = productCache.get(line.productId())
+                .orElseThrow(() -> new IllegalArgumentException("Product not found: " + line.productId()));
+        if (line.quantity() > line.heldQuantity() && line.quantity() - line.heldQuantity() > stockReservationService.availableToPromise(product)) {
+            throw new IllegalArgumentException("Requested quantity exceeds available stock.");
+        }
+    }
+
+    // A line removed and added again in one batch keeps the row id and hold it had
+    private static CartLineDTO lineFor(Map<Long, CartLineDTO> current, Long productId, int quantity) {
+        CartLineDTO previous = current.get(productId);
+        return previous != null ? previous.withQuantity(quantity) : new CartLineDTO(null, productId, quantity, 0);
+    }
+
+    private Map<Long, CartLineDTO> load(Long userId) {
+        lastAccess.put(userId, System.currentTimeMillis());
+        Map<Long, CartLineDTO> cart = cartStore.get(userId);
+        if (cart != null) {
+            return cart;
+        }
+        // Not in the store means nothing is pending, so cart_items is current; read it from the primary
+        Map<Long, CartLineDTO> loaded = new LinkedHashMap<>();
+        for (CartLineDTO line : ReadWriteRoutingDataSource.onPrimary(() -> cartItemRepository.findStoredLines(userId))) {
+            loaded.put(line.productId(), line);
+        }
+        return cartStore.update(userId, existing -> existing != null ? existing : loaded);
+    }
+
+    private CartDTO toCart(Map<Long, CartLineDTO> cart) {
+        List<CartItemResponseDTO> items = new ArrayList<>(cart.size());
+        for (CartLineDTO line : cart.values()) {
+            // A product deleted since it was added simply drops out, as it would from the join on the database path
+            productCache.get(line.productId()).ifPresent(product -> items.add(new CartItemResponseDTO(
+                    line.id(), product.getId(), product.getName(), product.getImageUrl(), product.getPrice(),
+                    stockReservationService.availableToPromise(product) + line.heldQuantity(), line.quantity())));
+        }
+        return new CartDTO(items);
+    }
+
+    // Writes the stored carts of these users to cart_items in the current transaction: one locking read for
+    // all their rows, then batched inserts, updates and one delete. Returns each user's rows after the write.
+    private Map<Long, List<CartItem>> writeCarts(Collection<Long> userIds) {
+        Map<Long, Map<Long, CartItem>> rowsByUser = new HashMap<>();
+        for (CartItem row : cartItemRepository.findByUserIdInForUpdate(userIds)) {
+            rowsByUser.computeIfAbsent(row.getUser().getId(), key -> new HashMap<>()).put(row.getProduct().getId(), row);
+        }
+        List<CartItem> changed = new ArrayList<>();
+        List<CartItem> removed = new ArrayList<>();
+        Map<Long, List<CartItem>> written = new HashMap<>();
+        for (Long userId : userIds) {
+            Map<Long, CartLineDTO> cart = cartStore.get(userId);
+            if (cart == null) {
+                continue;
+            }
+            Map<Long, CartItem> rows = rowsByUser.getOrDefault(userId, new HashMap<>());
+            List<CartItem> userRows = new ArrayList<>();
+            for (CartLineDTO line : cart.values()) {
+                CartItem row = rows.remove(line.productId());
+                if (row == null) {
+                    row = new CartItem();
+                    row.setUser(userRepository.getReferenceById(userId));
+                    row.setProduct(productRepository.getReferenceById(line.productId()));
+                    row.setQuantity(line.quantity());
+                    changed.add(row);
+                } else if (row.getQuantity() != line.quantity()) {
+                    row.setQuantity(line.quantity());
+                    changed.add(row);
+                }
+                userRows.add(row);
+            }
+            removed.addAll(rows.values());
+            written.put(userId, userRows);
+        }
+        stockReservationService.holdAvailable(changed, removed);
+        if (!removed.isEmpty()) {
+            cartItemRepository.deleteAllInBatch(removed);
+        }
+        cartItemRepository.saveAll(changed);
+        return written;
+    }
+
+    // Writes one cart in its own transaction, after dropping lines whose product no longer exists
+    private boolean flushAlone(Long userId) {
+        try {
+            dropDeletedProducts(userId);
+            Map<Long, List<CartItem>> written = transactionTemplate.execute(status -> writeCarts(List.of(userId)));
+            written.forEach(this::refreshStoredLines);
+            flushedCarts.incrementAndGet();
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Writing the cart of user {} failed, it stays pending", userId, e);
+            return false;
+        }
+    }
+
+    private void dropDeletedProducts(Long userId) {
+        Map<Long, CartLineDTO> cart = cartStore.get(userId);
+        if (cart == null || cart.isEmpty()) {
+            return;
+        }
+        Set<Long> existing = new HashSet<>(productRepository.findExistingIds(cart.keySet()));
+        if (existing.size() == cart.size()) {
+            return;
+        }
+        logger.info("Dropping cart lines of user {} for deleted products", userId);
+        cartStore.update(userId, stored -> {
+            if (stored == null) {
+                return null;
+            }
+            Map<Long, CartLineDTO> kept = new LinkedHashMap<>(stored);
+            kept.keySet().retainAll(existing);
+            return kept;
+        });
+    }
+
+    // New lines learn their row id, and every line the hold it ended up with
+    private void refreshStoredLines(Long userId, List<CartItem> rows) {
+        cartStore.update(userId, cart -> {
+            if (cart == null) {
+                return null;
+            }
+            Map<Long, CartLineDTO> refreshed = new LinkedHashMap<>(cart);
+            for (CartItem row : rows) {
+                Long productId = row.getProduct().getId();
+                CartLineDTO line = refreshed.get(productId);
+                if (line != null) {
+                    refreshed.put(productId, new CartLineDTO(row.getId(), productId, line.quantity(), row.getHeldQuantity()));
+                }
+            }
+            return refreshed;
+        });
+    }
+
+    private void flushInBackground() {
+        try {
+            flushPending();
+        } catch (RuntimeException e) {
+            // Carts that were not written are still pending and retried on the next tick
+            logger.warn("Writing cart changes failed", e);
+        }
+    }
+
+    // Drops carts nobody has touched for idle-evict-seconds, once everything in them is written
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEvictMs;
+        lastAccess.forEach((userId, accessedAt) -> {
+            if (accessedAt >= cutoff || dirty.contains(userId)) {
+                return;
+            }
+            ReentrantLock lock = lockFor(userId);
+            if (lock.tryLock()) {
+                try {
+                    if (!dirty.contains(userId) && lastAccess.remove(userId, accessedAt)) {
+                        cartStore.remove(userId);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    private ReentrantLock lockFor(Long userId) {
+        return locks[Math.floorMod(userId.hashCode(), LOCK_STRIPES)];
+    }
+
+    @FunctionalInterface
+    private interface CartEdit {
+        // current is the stored cart, cart the copy to change
+        void apply(Map<Long, CartLineDTO> current, Map<Long, CartLineDTO> cart);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: schedules items by expiry time and hands back everything that has come
+ * due when the clock is advanced. Scheduling and expiring cost the same whatever the number pending:
+ * each level covers wheelSize ticks of the level below, so far-off items wait in a coarse bucket and
+ * move down a level at a time as their expiry approaches.
+ * <p>
+ * Items fire no earlier than their expiry and at most one tick after it. Times are in milliseconds
+ * from any fixed origin (normally the epoch). Thread-safe.
+ */
+public class HierarchicalTimingWheel<T> {
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<Level<T>> levels = new ArrayList<>();
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("tickMs must be positive and wheelSize at least 2");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        levels.add(new Level<>(tickMs, wheelSize, startMs));
+    }
+
+    /**
+     * Schedules the item. Returns false, without scheduling it, when it is already due at the
+     * wheel's current time; the caller should handle it straight away.
+     */
+    public synchronized boolean schedule(T item, long expirationMs) {
+        if (!place(new Entry<>(item, expirationMs))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /** Moves the wheel forward to nowMs and returns the items that came due, in no particular order. */
+    public synchronized List<T> advance(long nowMs) {
+        List<T> due = new ArrayList<>();
+        Level<T> first = levels.get(0);
+        while (first.currentTime + tickMs <= nowMs) {
+            long bucketStart = first.currentTime;
+            first.currentTime += tickMs;
+            for (Entry<T> entry : first.take(bucketStart)) {
+                due.add(entry.item);
+            }
+            // Every level whose tick boundary was just crossed hands its bucket for the new span down to
+            // the finer levels; coarsest first, so entries can fall through several levels in one step
+            int top = 0;
+            while (top + 1 < levels.size() && first.currentTime % levels.get(top + 1).tickMs == 0) {
+                top++;
+                levels.get(top).currentTime = first.currentTime;
+            }
+            for (int i = top; i > 0; i--) {
+                Level<T> level = levels.get(i);
+                for (Entry<T> entry : level.take(level.currentTime)) {
+                    place(entry);
+                }
+            }
+        }
+        size -= due.size();
+        return due;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long currentTime() {
+        return levels.get(0).currentTime;
+    }
+
+    // Puts the entry in the finest level whose span covers it, adding a level when none does
+    private boolean place(Entry<T> entry) {
+        if (entry.expirationMs < levels.get(0).currentTime) {
+            return false;
+        }
+        for (int i = 0; ; i++) {
+            if (i == levels.size()) {
+                Level<T> below = levels.get(i - 1);
+                levels.add(new Level<>(below.interval, wheelSize, below.currentTime));
+            }
+            Level<T> level = levels.get(i);
+            if (entry.expirationMs < level.currentTime + level.interval) {
+                level.bucket(entry.expirationMs).add(entry);
+                return true;
+            }
+        }
+    }
+
+    private static final class Level<T> {
+        final long tickMs;
+        final long interval;
+        final List<Entry<T>>[] buckets;
+        long currentTime;
+
+        @SuppressWarnings("unchecked")
+        Level(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.interval = tickMs * wheelSize;
+            this.buckets = new List[wheelSize];
+            this.currentTime = startMs - Math.floorMod(startMs, tickMs);
+        }
+
+        List<Entry<T>> bucket(long timeMs) {
+            int index = (int) Math.floorMod(Math.floorDiv(timeMs, tickMs), (long) buckets.length);
+            if (buckets[index] == null) {
+                buckets[index] = new ArrayList<>();
+            }
+            return buckets[index];
+        }
+
+        List<Entry<T>> take(long timeMs) {
+            int index = (int) Math.floorMod(Math.floorDiv(timeMs, tickMs), (long) buckets.length);
+            List<Entry<T>> bucket = buckets[index];
+            buckets[index] = null;
+            return bucket != null ? bucket : List.of();
+        }
+    }
+
+    private record Entry<T>(T item, long expirationMs) {
+    }
+}
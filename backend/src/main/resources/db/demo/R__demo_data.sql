@@ -0,0 +1,35 @@
+-- Demo admin account, category and products for the Docker stack (MySQL). Only applied when
+-- classpath:db/demo is added to spring.flyway.locations, as docker-compose.yml does; every insert
+-- is skipped when its row already exists, so re-running after an edit only adds what is missing.
+
+-- Admin user (password: admin123)
+insert into users (address, email, name, password, phone, role)
+select 'ADDRESS', 'admin@admin.com', 'Admin 001', '$2a$10$JIw83fXfxfsrH2NpvKqjd.HUWlw6zpKuz7t5qYYEXFZ2tMouZyB/.', '0909090909', 'ADMIN'
+from dual
+where not exists (select 1 from users where email = 'admin@admin.com');
+
+insert into category (name)
+select 'Waxworks'
+from dual
+where not exists (select 1 from category where name = 'Waxworks');
+
+insert into product (description, image_url, name, price, stock, category_id)
+select s.description, s.image_url, s.name, s.price, s.stock, c.id
+from (
+    select 'Bright, juicy, and playfully sweet. This fragrance glows like a peach grove at sunset—summer bottled in wax.' as description,
+           '/uploads/1751899312816_1peach.png' as image_url, 'HOPO Golden Orchard - Peach' as name, 19.99 as price, 46 as stock
+    union all
+    select 'Elegant and poetic, this candle wraps your space in the timeless allure of blooming roses. A floral breeze to warm the heart.',
+           '/uploads/1751899360976_1rose.png', 'HOPO Bloom Whisper - Rose', 18.99, 47
+    union all
+    select 'Tranquil and earthy, this scent offers a mindful escape. Green tea''s herbal calm brings peace to your senses.',
+           '/uploads/1751899923070_1tea.png', 'HOPO Zen Leaves - Green Tea', 20.99, 47
+    union all
+    select 'Velvety and indulgent, this fragrance swirls with rich chocolatey warmth—like a hug made of cocoa.',
+           '/uploads/1751900001121_1choco.png', 'HOPO Cocoa Ember - Chocolate', 18.99, 39
+    union all
+    select 'Fresh and breezy, this candle pulls you toward the sea with a splash of marine air and coastal serenity.',
+           '/uploads/1751900314290_1ocean.png', 'HOPO Ocean Drift - Ocean', 19.99, 46
+) s
+join category c on c.name = 'Waxworks'
+where not exists (select 1 from product p where p.name = s.name);
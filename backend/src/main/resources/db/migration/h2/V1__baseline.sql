@@ -0,0 +1,62 @@
+-- H2 counterpart of mysql/V1__baseline.sql for tests and local runs; keep the two in step.
+create table category (
+    id bigint generated by default as identity,
+    name varchar(100) not null,
+    primary key (id)
+);
+
+create table users (
+    id bigint generated by default as identity,
+    phone varchar(20),
+    role varchar(20) not null,
+    email varchar(100) not null,
+    name varchar(100) not null,
+    address varchar(255),
+    password varchar(255) not null,
+    primary key (id)
+);
+
+create table product (
+    price numeric(10,2) not null,
+    stock integer not null,
+    category_id bigint,
+    id bigint generated by default as identity,
+    name varchar(200) not null,
+    image_url varchar(500),
+    description TEXT,
+    primary key (id)
+);
+
+create table orders (
+    total_amount numeric(10,2) not null,
+    id bigint generated by default as identity,
+    user_id bigint not null,
+    status varchar(50) not null,
+    shipping_address TEXT,
+    primary key (id)
+);
+
+create table order_items (
+    price numeric(10,2) not null,
+    quantity integer not null,
+    id bigint generated by default as identity,
+    order_id bigint not null,
+    product_id bigint not null,
+    primary key (id)
+);
+
+create table cart_items (
+    quantity integer not null,
+    id bigint generated by default as identity,
+    product_id bigint not null,
+    user_id bigint not null,
+    primary key (id)
+);
+
+alter table users add constraint UK6dotkott2kjsp8vw4d0m25fb7 unique (email);
+alter table cart_items add constraint FKl7je3auqyq1raj52qmwrgih8x foreign key (product_id) references product (id);
+alter table cart_items add constraint FK709eickf3kc0dujx3ub9i7btf foreign key (user_id) references users (id);
+alter table order_items add constraint FKbioxgbv59vetrxe0ejfubep1w foreign key (order_id) references orders (id);
+alter table order_items add constraint FKlf6f9q956mt144wiv6p1yko16 foreign key (product_id) references product (id);
+alter table orders add constraint FK32ql8ubntj5uh44ph9659tiih foreign key (user_id) references users (id);
+alter table product add constraint FK1mtsbur82frn64de7balymq9s foreign key (category_id) references category (id);
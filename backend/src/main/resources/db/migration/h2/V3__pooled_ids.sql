@@ -0,0 +1,5 @@
+-- H2 counterpart of mysql/V3__pooled_ids.sql; keep the two in step. H2 has real sequences, and the
+-- increment must match allocationSize on the entities.
+create sequence orders_seq start with 1 increment by 50;
+create sequence order_items_seq start with 1 increment by 50;
+create sequence cart_items_seq start with 1 increment by 50;
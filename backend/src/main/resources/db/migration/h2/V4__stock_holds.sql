@@ -0,0 +1,7 @@
+-- H2 counterpart of mysql/V4__stock_holds.sql; keep the two in step.
+alter table product add column reserved integer default 0 not null;
+
+alter table cart_items add column held_quantity integer default 0 not null;
+alter table cart_items add column hold_expires_at timestamp(6) with time zone;
+
+create index idx_cart_items_hold_expires on cart_items (hold_expires_at);
@@ -0,0 +1,8 @@
+-- H2 counterpart of mysql/V5__order_created_at.sql; keep the two in step.
+alter table orders add column if not exists created_at timestamp(6) with time zone;
+
+update orders set created_at = current_timestamp(6) where created_at is null;
+alter table orders alter column created_at set not null;
+
+create index idx_orders_user_created on orders (user_id, created_at, id);
+create index idx_orders_created on orders (created_at, id);
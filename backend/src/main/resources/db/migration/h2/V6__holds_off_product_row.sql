@@ -0,0 +1,4 @@
+-- H2 counterpart of mysql/V6__holds_off_product_row.sql; keep the two in step.
+alter table product drop column reserved;
+
+create index idx_cart_items_product_held on cart_items (product_id, held_quantity);
@@ -0,0 +1,24 @@
+-- Indexes for the repository finders that ddl-auto never created. users(email) is already covered
+-- by its unique constraint and orders(user_id) by its foreign key index.
+
+-- OrderRepository.findByStatus and the status filter of findWithItems
+create index idx_orders_status on orders (status, id);
+
+-- CartItemRepository.findByUser / findByUserAndProductId / deleteByUserAndProductId, and one cart
+-- line per product, as addItemToCart already keeps it: older duplicates are merged into the oldest line,
+-- which takes their total quantity, and then dropped
+update cart_items ci
+join (
+    select min(id) as keep_id, sum(quantity) as total from cart_items group by user_id, product_id having count(*) > 1
+) as dup on ci.id = dup.keep_id
+set ci.quantity = dup.total;
+delete from cart_items where id not in (
+    select keep_id from (select min(id) as keep_id from cart_items group by user_id, product_id) as keep
+);
+create unique index uk_cart_items_user_product on cart_items (user_id, product_id);
+
+-- ProductRepository.findByCategoryId (replaces the implicit foreign key index)
+create index idx_product_category on product (category_id, id);
+
+-- Items of a page of orders in findWithItems / findWithItemsByIds
+create index idx_order_items_order on order_items (order_id, product_id);
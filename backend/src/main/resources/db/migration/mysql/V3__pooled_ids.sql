@@ -0,0 +1,12 @@
+-- Pooled ids for orders, order_items and cart_items. MySQL has no sequences, so Hibernate keeps each
+-- one in a single-row table and reserves 50 ids per read (allocationSize on the entities).
+-- Hibernate treats the stored value as the top of the next block, so it starts 51 above the highest
+-- id already used. The id columns keep AUTO_INCREMENT; it is simply no longer used.
+create table orders_seq (next_val bigint) engine=InnoDB;
+insert into orders_seq select coalesce(max(id), 0) + 51 from orders;
+
+create table order_items_seq (next_val bigint) engine=InnoDB;
+insert into order_items_seq select coalesce(max(id), 0) + 51 from order_items;
+
+create table cart_items_seq (next_val bigint) engine=InnoDB;
+insert into cart_items_seq select coalesce(max(id), 0) + 51 from cart_items;
@@ -0,0 +1,10 @@
+-- Time-bounded stock holds for cart lines (StockReservationService). product.reserved counts the
+-- units held by all carts, so available-to-promise is stock - reserved without summing any rows.
+-- Existing cart lines start without a hold; checkout still takes their stock if it is available.
+alter table product add column reserved integer not null default 0;
+
+alter table cart_items add column held_quantity integer not null default 0;
+alter table cart_items add column hold_expires_at datetime(6);
+
+-- The expiry sweep reads the oldest holds first
+create index idx_cart_items_hold_expires on cart_items (hold_expires_at);
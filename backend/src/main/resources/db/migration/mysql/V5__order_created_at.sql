@@ -0,0 +1,19 @@
+-- Order creation time for the keyset pages of order history. Databases created by ddl-auto on the
+-- released version have no orders.created_at; those created from the old init-db.sql have it as a
+-- nullable TIMESTAMP. MySQL has no ADD COLUMN IF NOT EXISTS, so the column is only added when missing.
+set @add_created_at = (
+    select if(count(*) = 0, 'alter table orders add column created_at datetime(6) null', 'do 0')
+    from information_schema.columns
+    where table_schema = database() and table_name = 'orders' and column_name = 'created_at'
+);
+prepare add_created_at from @add_created_at;
+execute add_created_at;
+deallocate prepare add_created_at;
+
+-- When older orders were placed is unknown; they sort as placed now, in id order
+update orders set created_at = current_timestamp(6) where created_at is null;
+alter table orders modify created_at datetime(6) not null;
+
+-- OrderRepository keyset pages: one user's history, and all orders for the admin list and export
+create index idx_orders_user_created on orders (user_id, created_at, id);
+create index idx_orders_created on orders (created_at, id);
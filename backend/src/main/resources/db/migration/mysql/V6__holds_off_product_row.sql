@@ -0,0 +1,6 @@
+-- Stock holds stay on the cart rows (StockReservationService keeps their totals in memory), so product
+-- rows are written only by stock changes. Checkout sums the held units of a product from cart_items.
+alter table product drop column reserved;
+
+-- Covers the per-product sum of held units behind checkout's stock check
+create index idx_cart_items_product_held on cart_items (product_id, held_quantity);
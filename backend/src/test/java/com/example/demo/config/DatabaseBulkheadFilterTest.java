@@ -0,0 +1,110 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseBulkheadFilterTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void rejectsWith503WhenAllPermitsAreHeld() throws Exception {
+        DatabaseBulkheadFilter filter = new DatabaseBulkheadFilter(1, 1, 50, 3, registry);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/cart"), new MockHttpServletResponse(),
+                        (req, res) -> {
+                            entered.countDown();
+                            try {
+                                release.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertEquals(0.0, registry.get("db.bulkhead.available").gauge().value());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        AtomicInteger calls = new AtomicInteger();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/cart"), rejected, (req, res) -> calls.incrementAndGet());
+        assertEquals(503, rejected.getStatus());
+        assertEquals("3", rejected.getHeader("Retry-After"));
+        assertEquals(0, calls.get());
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(1.0, registry.get("db.bulkhead.available").gauge().value());
+    }
+
+    @Test
+    void permitIsReleasedWhenTheChainThrows() throws Exception {
+        DatabaseBulkheadFilter filter = new DatabaseBulkheadFilter(1, 1, 50, 1, registry);
+        FilterChain failing = (req, res) -> {
+            throw new IllegalStateException("boom");
+        };
+        assertThrows(IllegalStateException.class,
+                () -> filter.doFilter(new MockHttpServletRequest("GET", "/api/cart"), new MockHttpServletResponse(), failing));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/cart"), response, (req, res) -> {
+        });
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void nonApiRequestsBypassTheBulkhead() throws Exception {
+        DatabaseBulkheadFilter filter = new DatabaseBulkheadFilter(1, 1, 50, 1, registry);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/cart"), new MockHttpServletResponse(),
+                        (req, res) -> {
+                            try {
+                                release.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        AtomicInteger calls = new AtomicInteger();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), new MockHttpServletResponse(),
+                (req, res) -> calls.incrementAndGet());
+        assertEquals(1, calls.get());
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void asyncRequestKeepsItsPermitUntilItCompletes() throws Exception {
+        DatabaseBulkheadFilter filter = new DatabaseBulkheadFilter(1, 1, 50, 1, registry);
+        MockHttpServletRequest streaming = new MockHttpServletRequest("GET", "/api/orders/export");
+        streaming.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(streaming, response, (req, res) -> req.startAsync(req, res));
+        assertEquals(0.0, registry.get("db.bulkhead.available").gauge().value());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/cart"), rejected, (req, res) -> { });
+        assertEquals(503, rejected.getStatus());
+
+        streaming.getAsyncContext().complete();
+        assertEquals(1.0, registry.get("db.bulkhead.available").gauge().value());
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.config;
+
+import com.example.demo.entity.User;
+import com.example.demo.service.AsyncOrderService;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.CompletableFuture;
+
+import static com.example.demo.support.TestData.as;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Two permits in all, and ticket events that never arrive, so every subscription stays open
+@SpringBootTest(properties = {
+        "app.db-bulkhead.enabled=true",
+        "app.db-bulkhead.permits-per-connection=1",
+        "app.db-bulkhead.max-wait-ms=50",
+        "spring.datasource.hikari.maximum-pool-size=2"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+@Import(TestData.class)
+class DatabaseBulkheadSseTest {
+    @Autowired
+    private TestData testData;
+    @Autowired
+    private MockMvc mockMvc;
+    @MockitoBean
+    private AsyncOrderService asyncOrderService;
+
+    @Test
+    void openTicketSubscriptionsDoNotHoldPermits() throws Exception {
+        when(asyncOrderService.whenDone(anyString())).thenReturn(new CompletableFuture<>());
+        User user = testData.user();
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/api/orders/tickets/ticket-" + i + "/events").accept(MediaType.TEXT_EVENT_STREAM).with(as(user)))
+                    .andExpect(request().asyncStarted());
+        }
+
+        mockMvc.perform(get("/api/products").param("after", "0").param("limit", "5"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCountMetricsFilterTest {
+    private final QueryCountInspector inspector = new QueryCountInspector();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final QueryCountMetricsFilter filter = new QueryCountMetricsFilter();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(filter, "queryCountInspector", inspector);
+        ReflectionTestUtils.setField(filter, "meterRegistry", registry);
+    }
+
+    @Test
+    void recordsStatementsPerRequestByRoutePattern() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products/7");
+        FilterChain chain = (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/products/{id}");
+            inspector.inspect("select 1");
+            inspector.inspect("select 2");
+            inspector.inspect("select 3");
+        };
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        DistributionSummary summary = registry.get("http.server.requests.queries")
+                .tag("method", "GET").tag("uri", "/api/products/{id}").summary();
+        assertEquals(1, summary.count());
+        assertEquals(3.0, summary.totalAmount());
+    }
+
+    @Test
+    void statementsOutsideRequestsAreNotCounted() throws Exception {
+        inspector.inspect("select outside");
+        FilterChain chain = (req, res) -> inspector.inspect("select inside");
+        filter.doFilter(new MockHttpServletRequest("POST", "/nowhere"), new MockHttpServletResponse(), chain);
+        inspector.inspect("select after");
+
+        DistributionSummary summary = registry.get("http.server.requests.queries").tag("uri", "UNKNOWN").summary();
+        assertEquals(1.0, summary.totalAmount());
+        assertEquals(0, inspector.stop());
+    }
+
+    @Test
+    void countIsRecordedWhenTheChainThrows() {
+        FilterChain chain = (req, res) -> {
+            inspector.inspect("select 1");
+            throw new IllegalStateException("boom");
+        };
+        assertThrows(IllegalStateException.class,
+                () -> filter.doFilter(new MockHttpServletRequest("GET", "/x"), new MockHttpServletResponse(), chain));
+        assertEquals(1.0, registry.get("http.server.requests.queries").summary().totalAmount());
+    }
+}
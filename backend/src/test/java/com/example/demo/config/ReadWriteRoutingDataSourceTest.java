@@ -0,0 +1,184 @@
+package com.example.demo.config;
+
+import com.example.demo.dto.CategoryDTO;
+import com.example.demo.dto.PlaceOrderRequestDTO;
+import com.example.demo.entity.*;
+import com.example.demo.repository.*;
+import com.example.demo.service.CategoryService;
+import com.example.demo.service.OrderService;
+import com.example.demo.service.OrderService.QueuedOrder;
+import com.example.demo.support.TestData;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.example.demo.support.TestData.signIn;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routing against two separate H2 databases standing in for the primary and the replica.
+ * The replica gets the schema but no replicated rows, so a read shows which database served it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.url=jdbc:h2:mem:routing-replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.driver-class-name=org.h2.Driver",
+        "app.datasource.replica.username=sa",
+        "app.datasource.replica.password=",
+        "app.datasource.replica.read-your-writes-ms=60000",
+        // Cached entities and listings would answer reads before they reach either database
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@ActiveProfiles("h2")
+@Import(TestData.class)
+class ReadWriteRoutingDataSourceTest {
+    @Autowired
+    private TestData testData;
+    @Autowired
+    private CategoryService categoryService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primary;
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replica;
+
+    @TestConfiguration
+    static class ReplicaSchema {
+        // Copies the schema Flyway just created on the primary, before anything reads the replica
+        @Bean
+        InitializingBean replicaSchemaCopier(EntityManagerFactory entityManagerFactory,
+                                             @Qualifier("primaryDataSource") DataSource primary,
+                                             @Qualifier("replicaDataSource") DataSource replica) {
+            return () -> {
+                JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+                for (String statement : new JdbcTemplate(primary).queryForList("SCRIPT NODATA", String.class)) {
+                    if (!statement.startsWith("CREATE USER")) {
+                        replicaJdbc.execute(statement);
+                    }
+                }
+            };
+        }
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsReadTheReplica() {
+        String name = "Replica only " + TestData.unique();
+        new JdbcTemplate(replica).update("insert into category (name) values (?)", name);
+
+        assertTrue(categoryNames().contains(name));
+        assertEquals(0, countCategories(primary, name));
+    }
+
+    @Test
+    void writesGoToThePrimary() {
+        String name = "Primary only " + TestData.unique();
+        CategoryDTO dto = new CategoryDTO();
+        dto.setName(name);
+        categoryService.createCategory(dto);
+
+        assertEquals(1, countCategories(primary, name));
+        assertEquals(0, countCategories(replica, name));
+        assertFalse(categoryNames().contains(name));
+    }
+
+    @Test
+    void onPrimary_ReadsThePrimaryInsideReadOnlyTransactions() {
+        String name = "Forced " + TestData.unique();
+        categoryRepository.save(category(name));
+
+        assertTrue(ReadWriteRoutingDataSource.onPrimary(this::categoryNames).contains(name));
+        assertFalse(categoryNames().contains(name));
+    }
+
+    @Test
+    void placeOrder_UserReadsOwnOrderFromThePrimaryDespiteReplicaLag() {
+        User buyer = testData.user();
+        User other = testData.user();
+        Product product = productInCart(buyer);
+
+        signIn(buyer);
+        assertTrue(orderService.getCurrentUserOrdersSafe().isEmpty());
+        orderService.placeOrder(request(product));
+
+        // The replica never receives the order, so seeing it proves the read went to the primary
+        assertEquals(1, orderService.getCurrentUserOrdersSafe().size());
+        assertEquals(0, new JdbcTemplate(replica).queryForObject("select count(*) from orders", Integer.class));
+
+        // Users who have not written keep reading the replica
+        signIn(other);
+        String name = "Replica only " + TestData.unique();
+        new JdbcTemplate(replica).update("insert into category (name) values (?)", name);
+        assertTrue(categoryNames().contains(name));
+    }
+
+    @Test
+    void placeOrderBatch_BuyersReadTheirOrdersFromThePrimary() {
+        User buyer = testData.user();
+        Product product = productInCart(buyer);
+
+        // Placed with no signed-in user, as on the order pipeline thread
+        orderService.placeOrderBatch(List.of(new QueuedOrder(buyer.getId(), request(product))));
+
+        signIn(buyer);
+        assertEquals(1, orderService.getCurrentUserOrdersSafe().size());
+    }
+
+    private Product productInCart(User buyer) {
+        Product product = testData.product(10);
+        CartItem item = new CartItem();
+        item.setUser(buyer);
+        item.setProduct(product);
+        item.setQuantity(2);
+        cartItemRepository.save(item);
+        return product;
+    }
+
+    private static PlaceOrderRequestDTO request(Product product) {
+        PlaceOrderRequestDTO request = new PlaceOrderRequestDTO();
+        request.setShippingAddress("1 Replica Road");
+        request.setProductIds(List.of(product.getId()));
+        request.setTotalAmount(new BigDecimal("10.00"));
+        return request;
+    }
+
+    private List<String> categoryNames() {
+        return categoryService.getAllCategories().stream().map(CategoryDTO::getName).toList();
+    }
+
+    private static int countCategories(DataSource dataSource, String name) {
+        return new JdbcTemplate(dataSource).queryForObject("select count(*) from category where name = ?", Integer.class, name);
+    }
+
+    private static Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        return category;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.*;
+import com.example.demo.repository.*;
+import com.example.demo.service.OrderService;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.demo.support.QueryBudget.assertAtMost;
+import static com.example.demo.support.TestData.as;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statement budgets for the hot read endpoints. Each budget is checked at two data sizes so a
+ * per-row query (N+1) fails here instead of in production.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+@Import(TestData.class)
+class ApiQueryBudgetTest {
+    @Autowired
+    private TestData testData;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Test
+    void getCart_OneStatementRegardlessOfCartSize() throws Exception {
+        for (int lines : new int[]{1, 25}) {
+            User user = testData.user();
+            for (Product product : products(lines)) {
+                CartItem item = new CartItem();
+                item.setUser(user);
+                item.setProduct(product);
+                item.setQuantity(1);
+                cartItemRepository.save(item);
+            }
+            assertAtMost(1, () -> mockMvc.perform(get("/api/cart").with(as(user)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items.length()").value(lines))
+                    .andExpect(jsonPath("$.totalQuantity").value(lines)));
+        }
+    }
+
+    @Test
+    void patchCart_AtMostSevenStatementsRegardlessOfBatchSize() throws Exception {
+        for (int lines : new int[]{2, 30}) {
+            User user = testData.user();
+            List<Product> products = products(lines);
+            // Half the products are already in the cart and get updated, the other half are new lines
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < lines; i++) {
+                Product product = products.get(i);
+                if (i % 2 == 0) {
+                    CartItem item = new CartItem();
+                    item.setUser(user);
+                    item.setProduct(product);
+                    item.setQuantity(1);
+                    cartItemRepository.save(item);
+                }
+                body.append(i == 0 ? "" : ",").append("{\"op\":\"ADD\",\"productId\":").append(product.getId()).append(",\"quantity\":2}");
+            }
+            body.append("]");
+            // User check, products, existing lines, insert batch, update batch, cart read, plus at most one id block
+            assertAtMost(7, () -> mockMvc.perform(patch("/api/cart").with(as(user))
+                            .contentType(MediaType.APPLICATION_JSON).content(body.toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items.length()").value(lines))
+                    .andExpect(jsonPath("$.totalQuantity").value(lines * 2 + (lines + 1) / 2)));
+        }
+    }
+
+    @Test
+    void getMyOrders_WithoutParametersIsTheFirstPageOfTheDefaultSize() throws Exception {
+        for (int orders : new int[]{1, OrderService.DEFAULT_PAGE_LIMIT + 5}) {
+            User user = testData.user();
+            orders(user, orders, 3);
+            assertAtMost(2, () -> mockMvc.perform(get("/api/orders/my-orders").with(as(user)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items.length()").value(Math.min(orders, OrderService.DEFAULT_PAGE_LIMIT)))
+                    .andExpect(jsonPath("$.nextCursor").value(orders > OrderService.DEFAULT_PAGE_LIMIT ? notNullValue() : nullValue())));
+        }
+    }
+
+    @Test
+    void getMyOrdersPage_AtMostTwoStatementsPerPage() throws Exception {
+        for (int orders : new int[]{2, 30}) {
+            User user = testData.user();
+            orders(user, orders, 3);
+            assertAtMost(2, () -> mockMvc.perform(get("/api/orders/my-orders").param("limit", "10").with(as(user)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items.length()").value(Math.min(orders, 10))));
+        }
+    }
+
+    @Test
+    void placeOrder_AtMostSevenStatementsRegardlessOfLineCount() throws Exception {
+        for (int lines : new int[]{1, 25}) {
+            User user = testData.user();
+            List<Long> productIds = new ArrayList<>();
+            for (Product product : products(lines)) {
+                CartItem item = new CartItem();
+                item.setUser(user);
+                item.setProduct(product);
+                item.setQuantity(1);
+                cartItemRepository.save(item);
+                productIds.add(product.getId());
+            }
+            String body = "{\"shippingAddress\":\"1 Budget Street\",\"totalAmount\":9.99,\"productIds\":" + productIds + "}";
+            // Locking cart read, product read, cart delete, order insert and one batched item insert, plus at
+            // most one id block per sequence. The stock update is a plain JDBC batch and is not counted here
+            assertAtMost(7, () -> mockMvc.perform(post("/api/orders/place").with(as(user))
+                            .contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isOk()));
+            assertTrue(cartItemRepository.findByUser(user).isEmpty());
+        }
+    }
+
+    @Test
+    void getProductPage_OneStatementPerPage() throws Exception {
+        products(30);
+        assertAtMost(1, () -> mockMvc.perform(get("/api/products").param("after", "0").param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(20)));
+    }
+
+    private List<Product> products(int count) {
+        Category category = testData.category();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(new BigDecimal("9.99"));
+            product.setStock(100);
+            product.setCategory(category);
+            products.add(product);
+        }
+        return productRepository.saveAll(products);
+    }
+
+    private void orders(User user, int count, int itemsPerOrder) {
+        List<Product> products = products(itemsPerOrder);
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setStatus("PENDING");
+            order.setShippingAddress("1 Budget Street");
+            order.setTotalAmount(new BigDecimal("29.97"));
+            order = orderRepository.save(order);
+            for (Product product : products) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(1);
+                item.setPrice(product.getPrice());
+                orderItemRepository.save(item);
+            }
+        }
+    }
+}
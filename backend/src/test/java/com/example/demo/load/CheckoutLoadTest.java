@@ -0,0 +1,282 @@
+package com.example.demo.load;
+
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.User;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.PasswordHasher;
+import com.example.demo.service.ProductSearchIndex;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Closed-loop load run of browse, cart and checkout traffic over HTTP against the full application
+ * on H2 in MySQL mode. Each virtual user logs in once and then repeats shopping sessions with no
+ * think time until the run ends. Excluded from the regular test task; run with {@code ./gradlew loadTest}.
+ * With {@code -Pload.virtualThreads=true} the server runs on virtual threads, and the run fails if any
+ * of them is pinned to its carrier for longer than 20 ms.
+ */
+@Tag("load")
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "auth.bcrypt.cost=4",
+        "app.metrics.scrape.password=load-test-scrape",
+        "logging.level.com.example.demo.controller=WARN"
+})
+class CheckoutLoadTest {
+    private static final String PASSWORD = "load-test-password";
+    private static final String[] WORDS = {"wireless", "leather", "organic", "steel", "vintage", "compact",
+            "premium", "classic", "portable", "ergonomic", "bamboo", "ceramic"};
+
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean("load.virtualThreads");
+
+    private final int virtualUsers = Integer.getInteger("load.users", 16);
+    private final int productCount = Integer.getInteger("load.products", 1000);
+    private final int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+    private final int durationSeconds = Integer.getInteger("load.durationSeconds", 20);
+    private final Path reportDir = Path.of(System.getProperty("load.reportDir", "build/reports/load"));
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final LoadReport report = new LoadReport(VIRTUAL_THREADS ? "virtual" : "platform");
+    private List<Long> productIds;
+
+    @DynamicPropertySource
+    static void serverThreads(DynamicPropertyRegistry registry) {
+        registry.add("spring.threads.virtual.enabled", () -> VIRTUAL_THREADS);
+        // The bulkhead follows the thread mode unless -Pload.bulkhead is given, so each can be measured alone
+        registry.add("app.db-bulkhead.enabled", () -> System.getProperty("load.bulkhead", String.valueOf(VIRTUAL_THREADS)));
+    }
+
+    @Test
+    void browseCartCheckout() throws Exception {
+        seed();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < virtualUsers; i++) {
+            tokens.add(login("load" + i + "@example.com"));
+        }
+
+        List<String> pinned = Collections.synchronizedList(new ArrayList<>());
+        RecordingStream pinning = new RecordingStream();
+        pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(20)).withStackTrace();
+        pinning.onEvent("jdk.VirtualThreadPinned", event -> pinned.add(describe(event)));
+        pinning.startAsync();
+
+        ExecutorService executor = Executors.newFixedThreadPool(virtualUsers);
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long runEnd = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<?>> users = new ArrayList<>();
+        for (String token : tokens) {
+            users.add(executor.submit(() -> {
+                while (System.nanoTime() < runEnd) {
+                    session(token);
+                }
+                return null;
+            }));
+        }
+        TimeUnit.NANOSECONDS.sleep(warmupEnd - System.nanoTime());
+        report.setRecording(true);
+        long measureStart = System.nanoTime();
+        for (Future<?> user : users) {
+            user.get();
+        }
+        double elapsedSeconds = (System.nanoTime() - measureStart) / 1e9;
+        report.setRecording(false);
+        executor.shutdown();
+        pinning.close();
+
+        System.out.println(report.summary(elapsedSeconds, virtualUsers));
+        report.write(reportDir, elapsedSeconds, virtualUsers);
+        Files.writeString(reportDir.resolve("pinned.txt"), String.join(System.lineSeparator(), pinned));
+        // Server-side view of the same run: pool wait times, statements per request, business timers
+        String scrapeCredential = Base64.getEncoder().encodeToString("prometheus:load-test-scrape".getBytes());
+        HttpResponse<String> metrics = client.send(HttpRequest.newBuilder(uri("/actuator/prometheus"))
+                        .header("Authorization", "Basic " + scrapeCredential).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        Files.writeString(reportDir.resolve("prometheus.txt"), metrics.body());
+
+        assertTrue(report.count("checkout") > 0, "No checkouts completed during the run");
+        assertTrue(report.totalErrors() <= report.totalRequests() / 100, "More than 1% of requests failed");
+        if (!pinned.isEmpty()) {
+            fail(pinned.size() + " virtual threads were pinned for over 20 ms, see pinned.txt. First:\n" + pinned.get(0));
+        }
+    }
+
+    private static String describe(RecordedEvent event) {
+        StringBuilder out = new StringBuilder("Pinned for ").append(event.getDuration().toMillis()).append(" ms");
+        if (event.getStackTrace() != null) {
+            for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                out.append(System.lineSeparator()).append("    at ").append(frame.getMethod().getType().getName())
+                        .append('.').append(frame.getMethod().getName()).append(':').append(frame.getLineNumber());
+            }
+        }
+        return out.toString();
+    }
+
+    // One shopping visit: browse a page, open a few products, sometimes search, fill the cart,
+    // and check out about a third of the time
+    private void session(String token) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long after = productIds.get(random.nextInt(productIds.size())) - 1;
+        get("browse", "/api/products?after=" + after + "&limit=20", token);
+        for (int i = random.nextInt(1, 4); i > 0; i--) {
+            get("product", "/api/products/" + randomProductId(), token);
+        }
+        if (random.nextInt(100) < 40) {
+            get("search", "/api/products/search?query=" + WORDS[random.nextInt(WORDS.length)], token);
+        }
+        if (random.nextInt(100) < 60) {
+            for (int i = random.nextInt(1, 3); i > 0; i--) {
+                send("cartAdd", post("/api/cart/add", Map.of("productId", randomProductId(), "quantity", 1), token));
+            }
+            JsonNode cart = get("cart", "/api/cart", token);
+            if (cart != null && cart.get("items").size() > 0 && random.nextInt(100) < 50) {
+                checkout(cart, token);
+            }
+        }
+        if (random.nextInt(100) < 15) {
+            get("myOrders", "/api/orders/my-orders?limit=10", token);
+        }
+    }
+
+    private void checkout(JsonNode cart, String token) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode item : cart.get("items")) {
+            ids.add(item.get("productId").asLong());
+        }
+        BigDecimal totalAmount = cart.get("subtotal").decimalValue();
+        send("checkout", post("/api/orders/place",
+                Map.of("shippingAddress", "1 Load Street", "productIds", ids, "totalAmount", totalAmount), token));
+    }
+
+    private long randomProductId() {
+        return productIds.get(ThreadLocalRandom.current().nextInt(productIds.size()));
+    }
+
+    private JsonNode get(String operation, String path, String token) throws Exception {
+        return send(operation, HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build());
+    }
+
+    private HttpRequest post(String path, Object body, String token) throws Exception {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private JsonNode send(String operation, HttpRequest request) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        long latency = System.nanoTime() - start;
+        boolean success = response.statusCode() / 100 == 2;
+        report.record(operation, latency, success);
+        if (!success || response.body().length == 0) {
+            return null;
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private String login(String email) throws Exception {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri("/api/auth/login"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(
+                                objectMapper.writeValueAsBytes(Map.of("email", email, "password", PASSWORD))))
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for " + email + ": " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body()).get("token").asText();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private void seed() {
+        String hash = passwordHasher.encode(PASSWORD);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < virtualUsers; i++) {
+            User user = new User();
+            user.setEmail("load" + i + "@example.com");
+            user.setPassword(hash);
+            user.setRole("USER");
+            user.setName("Load User " + i);
+            user.setPhone("0123456789");
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+
+        Category category = new Category();
+        category.setName("Load");
+        category = categoryRepository.save(category);
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < productCount; i++) {
+            Product product = new Product();
+            product.setName(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " item " + i);
+            product.setDescription("A " + WORDS[random.nextInt(WORDS.length)] + " product used for load testing.");
+            product.setPrice(BigDecimal.valueOf(100 + random.nextInt(10000), 2));
+            // Deep stock so the run measures checkout cost, not stock-outs
+            product.setStock(1_000_000);
+            product.setCategory(category);
+            products.add(product);
+        }
+        productIds = productRepository.saveAll(products).stream().map(Product::getId).toList();
+        productSearchIndex.rebuild();
+    }
+}
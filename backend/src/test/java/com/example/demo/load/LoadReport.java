@@ -0,0 +1,101 @@
+package com.example.demo.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-operation latency histograms (microseconds, up to one minute) and error counts for a load run.
+ */
+class LoadReport {
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, Histogram> latencies = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicLong> errors = new ConcurrentSkipListMap<>();
+    private final Histogram total = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final String serverThreads;
+    private volatile boolean recording;
+
+    LoadReport(String serverThreads) {
+        this.serverThreads = serverThreads;
+    }
+
+    void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    void record(String operation, long latencyNanos, boolean success) {
+        if (!recording) {
+            return;
+        }
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS);
+        latencies.computeIfAbsent(operation, k -> new ConcurrentHistogram(MAX_LATENCY_MICROS, 3)).recordValue(micros);
+        total.recordValue(micros);
+        if (!success) {
+            errors.computeIfAbsent(operation, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    long count(String operation) {
+        Histogram histogram = latencies.get(operation);
+        return histogram != null ? histogram.getTotalCount() : 0;
+    }
+
+    long totalRequests() {
+        return total.getTotalCount();
+    }
+
+    long totalErrors() {
+        return errors.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    String summary(double elapsedSeconds, int virtualUsers) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Load run: %d virtual users, %s server threads, %.1f s measured%n",
+                virtualUsers, serverThreads, elapsedSeconds));
+        out.append(String.format("Throughput: %.1f req/s, %d requests, %d errors%n%n",
+                total.getTotalCount() / elapsedSeconds, total.getTotalCount(), totalErrors()));
+        out.append(String.format("%-14s %8s %8s %7s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        latencies.forEach((operation, histogram) -> out.append(row(operation, histogram, elapsedSeconds)));
+        out.append(row("ALL", total, elapsedSeconds));
+        return out.toString();
+    }
+
+    void write(Path directory, double elapsedSeconds, int virtualUsers) throws IOException {
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve("summary.txt"), summary(elapsedSeconds, virtualUsers));
+        for (Map.Entry<String, Histogram> entry : latencies.entrySet()) {
+            writeDistribution(directory.resolve(entry.getKey() + ".hgrm"), entry.getValue());
+        }
+        writeDistribution(directory.resolve("all.hgrm"), total);
+    }
+
+    private String row(String operation, Histogram histogram, double elapsedSeconds) {
+        AtomicLong errorCount = errors.get(operation);
+        long errorTotal = "ALL".equals(operation) ? totalErrors() : errorCount != null ? errorCount.get() : 0;
+        return String.format("%-14s %8d %8.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                operation, histogram.getTotalCount(), histogram.getTotalCount() / elapsedSeconds, errorTotal,
+                millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    // Standard .hgrm percentile distribution in milliseconds, loadable by the HdrHistogram plotter
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
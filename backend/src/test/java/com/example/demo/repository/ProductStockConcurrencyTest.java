@@ -0,0 +1,93 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.Product;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(TestData.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductStockConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int CHECKOUTS = 4000;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void decrementStock_ShortLineUpdatesNothing() {
+        Product p = testData.product(1);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int[] updated = tx.execute(status -> productRepository.decrementStock(Map.of(p.getId(), 2)));
+        assertArrayEquals(new int[]{0}, updated);
+        assertEquals(1, productRepository.findById(p.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void decrementStock_ConcurrentCheckoutsNeverOversell() throws Exception {
+        Product plentiful = testData.product(1000);
+        Product scarce = testData.product(600);
+        Map<Long, Integer> order = new TreeMap<>(Map.of(plentiful.getId(), 1, scarce.getId(), 1));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    tx.executeWithoutResult(status -> {
+                        for (int count : productRepository.decrementStock(order)) {
+                            if (count == 0) {
+                                throw new IllegalArgumentException("Not enough stock");
+                            }
+                        }
+                    });
+                    placed.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%d checkouts on %d threads in %.2fs: %.0f checkouts/sec (%d placed, %d rejected)%n",
+                CHECKOUTS, THREADS, seconds, CHECKOUTS / seconds, placed.get(), rejected.get());
+        assertEquals(600, placed.get());
+        assertEquals(CHECKOUTS - 600, rejected.get());
+        // Rejected orders rolled back their first line, so only placed orders consumed plentiful stock
+        assertEquals(400, productRepository.findById(plentiful.getId()).orElseThrow().getStock());
+        assertEquals(0, productRepository.findById(scarce.getId()).orElseThrow().getStock());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.repository;
+
+import jakarta.persistence.EntityManager;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The schema comes from the Flyway migrations and Hibernate validates it on startup, so this context
+ * starting at all means the entities and migrations agree. The plans below check that the SQL behind
+ * each repository finder is served by an index rather than a table scan.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class SchemaMigrationTest {
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void migrations_SameVersionsForEveryVendor() throws IOException {
+        assertEquals(scripts("mysql"), scripts("h2"));
+        assertFalse(scripts("mysql").isEmpty());
+    }
+
+    @Test
+    void orderCreatedAt_BackfilledForOrdersPlacedBeforeItExisted() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:released;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        FluentConfiguration flyway = Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2");
+        flyway.target("4").load().migrate();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("insert into users (id, role, email, name, password) values (1, 'USER', 'old@example.com', 'Old', 'x')");
+        jdbc.update("insert into orders (id, total_amount, user_id, status) values (1, 10.00, 1, 'DELIVERED')");
+
+        flyway.target("latest").load().migrate();
+
+        assertEquals(1, jdbc.queryForObject("select count(*) from orders where created_at is not null", Integer.class));
+        assertThrows(Exception.class, () ->
+                jdbc.update("insert into orders (id, total_amount, user_id, status) values (2, 10.00, 1, 'PENDING')"));
+    }
+
+    @Test
+    void cartItems_DuplicateLinesMergedIntoTheOldest() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:duplicates;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        FluentConfiguration flyway = Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2");
+        flyway.target("1").load().migrate();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("insert into users (id, role, email, name, password) values (1, 'USER', 'old@example.com', 'Old', 'x')");
+        jdbc.update("insert into product (id, price, stock, name) values (1, 10.00, 10, 'Candle'), (2, 10.00, 10, 'Soap')");
+        jdbc.update("insert into cart_items (id, user_id, product_id, quantity) values (1, 1, 1, 2), (2, 1, 2, 1), (3, 1, 1, 3)");
+
+        flyway.target("latest").load().migrate();
+
+        assertEquals(List.of(5, 1), jdbc.queryForList("select quantity from cart_items order by id", Integer.class));
+        assertEquals(List.of(1L, 2L), jdbc.queryForList("select id from cart_items order by id", Long.class));
+    }
+
+    @Test
+    void userFindByEmail_UsesUniqueIndex() {
+        assertIndexUsed("uk6dotkott2kjsp8vw4d0m25fb7", "select id from users where email = 'a@example.com'");
+    }
+
+    @Test
+    void orderFinders_UseIndexes() {
+        assertIndexUsed("idx_orders_status", "select id from orders where status = 'PENDING' order by id");
+        assertIndexUsed("idx_orders_user_created", "select id from orders where user_id = 1 " +
+                "and (created_at < timestamp '2030-01-01 00:00:00' or (created_at = timestamp '2030-01-01 00:00:00' and id < 10)) " +
+                "order by created_at desc, id desc");
+        assertNoTableScan("select id from order_items where order_id in (1, 2, 3)");
+    }
+
+    @Test
+    void cartFinders_UseIndexes() {
+        assertIndexUsed("uk_cart_items_user_product", "select id from cart_items where user_id = 1 and product_id = 2");
+        assertNoTableScan("select id from cart_items where user_id = 1");
+    }
+
+    @Test
+    void productFindByCategoryId_UsesIndex() {
+        assertNoTableScan("select id from product where category_id = 1");
+    }
+
+    private void assertIndexUsed(String index, String sql) {
+        String plan = plan(sql);
+        assertTrue(plan.contains(index), () -> "Expected " + index + " in plan: " + plan);
+    }
+
+    private void assertNoTableScan(String sql) {
+        String plan = plan(sql);
+        assertFalse(plan.contains("tablescan"), () -> "Table scan in plan: " + plan);
+    }
+
+    private String plan(String sql) {
+        return entityManager.createNativeQuery("explain " + sql).getSingleResult().toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> scripts(String vendor) throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources("classpath:db/migration/" + vendor + "/*.sql");
+        return Arrays.stream(resources).map(Resource::getFilename).sorted().toList();
+    }
+}
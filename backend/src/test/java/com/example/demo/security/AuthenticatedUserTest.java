@@ -0,0 +1,87 @@
+package com.example.demo.security;
+
+import com.example.demo.entity.User;
+import com.example.demo.exception.UnknownUserException;
+import com.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthenticatedUserTest {
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void currentUser_TokenWithIdIsAReferenceWithoutAQuery() {
+        User reference = user(7L);
+        when(userRepository.getReferenceById(7L)).thenReturn(reference);
+        signIn(new AuthenticatedUser(7L, "a@example.com", AUTHORITIES));
+
+        assertSame(reference, AuthenticatedUser.currentUser(userRepository));
+        assertEquals(7L, AuthenticatedUser.currentUserId(userRepository));
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    void currentUser_TokenWithoutIdFallsBackToTheEmail() {
+        User user = user(8L);
+        when(userRepository.findByEmail("b@example.com")).thenReturn(Optional.of(user));
+        signIn("b@example.com");
+
+        assertSame(user, AuthenticatedUser.currentUser(userRepository));
+        assertEquals(8L, AuthenticatedUser.currentUserId(userRepository));
+    }
+
+    @Test
+    void currentUser_UnknownEmailIsRejected() {
+        when(userRepository.findByEmail("gone@example.com")).thenReturn(Optional.empty());
+        signIn("gone@example.com");
+
+        assertThrows(UnknownUserException.class, () -> AuthenticatedUser.currentUserId(userRepository));
+    }
+
+    @Test
+    void currentUserForWrite_ChecksTheUserStillExists() {
+        User reference = user(7L);
+        when(userRepository.existsById(7L)).thenReturn(true);
+        when(userRepository.getReferenceById(7L)).thenReturn(reference);
+        signIn(new AuthenticatedUser(7L, "a@example.com", AUTHORITIES));
+
+        assertSame(reference, AuthenticatedUser.currentUserForWrite(userRepository));
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    void currentUserForWrite_DeletedUserIsRejected() {
+        when(userRepository.existsById(9L)).thenReturn(false);
+        signIn(new AuthenticatedUser(9L, "deleted@example.com", AUTHORITIES));
+
+        assertThrows(UnknownUserException.class, () -> AuthenticatedUser.currentUserForWrite(userRepository));
+        verify(userRepository, never()).getReferenceById(any());
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static void signIn(Object principal) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, AUTHORITIES));
+    }
+}
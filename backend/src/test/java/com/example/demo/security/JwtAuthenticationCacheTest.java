@@ -0,0 +1,119 @@
+package com.example.demo.security;
+
+import com.example.demo.dto.CacheStatsDTO;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationCacheTest {
+    @Mock
+    private JwtUtil jwtUtil;
+
+    private JwtAuthenticationCache authenticationCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        authenticationCache = new JwtAuthenticationCache(jwtUtil, 100, 300);
+    }
+
+    private Claims claims(String email, String role, long validForMs) {
+        Claims claims = Jwts.claims().setSubject(email);
+        claims.put(JwtUtil.USER_ID_CLAIM, 42);
+        claims.put("role", role);
+        claims.setExpiration(new Date(System.currentTimeMillis() + validForMs));
+        return claims;
+    }
+
+    @Test
+    void authenticate_VerifiesOnceThenReturnsSameAuthentication() {
+        when(jwtUtil.extractAllClaims("token")).thenReturn(claims("a@x.com", "ADMIN", 60000));
+        Authentication first = authenticationCache.authenticate("token");
+        Authentication second = authenticationCache.authenticate("token");
+        assertSame(first, second);
+        assertEquals("a@x.com", ((User) first.getPrincipal()).getUsername());
+        assertEquals(42L, ((AuthenticatedUser) first.getPrincipal()).getId());
+        assertEquals("ROLE_ADMIN", first.getAuthorities().iterator().next().getAuthority());
+        assertTrue(first.isAuthenticated());
+        verify(jwtUtil, times(1)).extractAllClaims("token");
+        CacheStatsDTO stats = authenticationCache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    void authenticate_DistinctTokensAreCachedSeparately() {
+        when(jwtUtil.extractAllClaims("t1")).thenReturn(claims("a@x.com", "USER", 60000));
+        when(jwtUtil.extractAllClaims("t2")).thenReturn(claims("b@x.com", "USER", 60000));
+        assertEquals("a@x.com", ((User) authenticationCache.authenticate("t1").getPrincipal()).getUsername());
+        assertEquals("b@x.com", ((User) authenticationCache.authenticate("t2").getPrincipal()).getUsername());
+        assertEquals(2, authenticationCache.getStats().getSize());
+    }
+
+    @Test
+    void authenticate_InvalidTokenIsNotCached() {
+        when(jwtUtil.extractAllClaims("token"))
+                .thenThrow(new SignatureException("bad signature"))
+                .thenReturn(claims("a@x.com", "USER", 60000));
+        assertThrows(SignatureException.class, () -> authenticationCache.authenticate("token"));
+        assertNotNull(authenticationCache.authenticate("token"));
+        verify(jwtUtil, times(2)).extractAllClaims("token");
+    }
+
+    @Test
+    void authenticate_RealTokenCarriesUserId() {
+        JwtUtil realJwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(realJwtUtil, "secret", "secret123");
+        ReflectionTestUtils.setField(realJwtUtil, "expirationMs", 60000L);
+        JwtAuthenticationCache cache = new JwtAuthenticationCache(realJwtUtil, 100, 300);
+        String token = realJwtUtil.generateToken(42L, "a@x.com", "USER");
+        AuthenticatedUser principal = (AuthenticatedUser) cache.authenticate(token).getPrincipal();
+        assertEquals(42L, principal.getId());
+        assertEquals("a@x.com", principal.getUsername());
+    }
+
+    @Test
+    void authenticate_TokenWithoutUserIdHasNullId() {
+        Claims claims = claims("a@x.com", "USER", 60000);
+        claims.remove(JwtUtil.USER_ID_CLAIM);
+        when(jwtUtil.extractAllClaims("token")).thenReturn(claims);
+        assertNull(((AuthenticatedUser) authenticationCache.authenticate("token").getPrincipal()).getId());
+    }
+
+    @Test
+    void authenticate_MissingSubjectThrows() {
+        when(jwtUtil.extractAllClaims("token")).thenReturn(Jwts.claims().setExpiration(new Date(System.currentTimeMillis() + 60000)));
+        assertThrows(IllegalArgumentException.class, () -> authenticationCache.authenticate("token"));
+    }
+
+    @Test
+    void authenticate_EntryDoesNotOutliveTokenExpiry() throws InterruptedException {
+        when(jwtUtil.extractAllClaims("token"))
+                .thenReturn(claims("a@x.com", "USER", 100))
+                .thenThrow(new SignatureException("expired"));
+        assertNotNull(authenticationCache.authenticate("token"));
+        Thread.sleep(300);
+        assertThrows(SignatureException.class, () -> authenticationCache.authenticate("token"));
+        verify(jwtUtil, times(2)).extractAllClaims("token");
+    }
+
+    @Test
+    void authenticate_AlreadyExpiredClaimsAreNotServedFromCache() {
+        when(jwtUtil.extractAllClaims("token")).thenReturn(claims("a@x.com", "USER", -1000));
+        authenticationCache.authenticate("token");
+        authenticationCache.authenticate("token");
+        verify(jwtUtil, times(2)).extractAllClaims("token");
+    }
+}
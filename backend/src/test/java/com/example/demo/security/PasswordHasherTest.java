@@ -0,0 +1,74 @@
+package com.example.demo.security;
+
+import com.example.demo.exception.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+    private PasswordHasher passwordHasher;
+
+    @AfterEach
+    void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void encodeAndMatches_UseConfiguredCost() {
+        passwordHasher = new PasswordHasher(4, 1, 4, 5000, 1);
+        String hash = passwordHasher.encode("secret");
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(passwordHasher.matches("secret", hash));
+        assertFalse(passwordHasher.matches("other", hash));
+    }
+
+    @Test
+    void needsRehash_OnlyWhenCostDiffers() {
+        passwordHasher = new PasswordHasher(5, 1, 4, 5000, 1);
+        assertFalse(passwordHasher.needsRehash(new BCryptPasswordEncoder(5).encode("secret")));
+        assertTrue(passwordHasher.needsRehash(new BCryptPasswordEncoder(4).encode("secret")));
+        assertTrue(passwordHasher.needsRehash(new BCryptPasswordEncoder(6).encode("secret")));
+        assertTrue(passwordHasher.needsRehash("not-a-bcrypt-hash"));
+    }
+
+    @Test
+    void run_RejectsWithRetryAfterWhenQueueIsFull() throws Exception {
+        passwordHasher = new PasswordHasher(4, 1, 1, 5000, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> passwordHasher.run(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> passwordHasher.run(() -> true));
+        while (passwordHasher.getQueueDepth() == 0) {
+            Thread.onSpinWait();
+        }
+        ServiceBusyException ex = assertThrows(ServiceBusyException.class, () -> passwordHasher.run(() -> true));
+        assertEquals(3, ex.getRetryAfterSeconds());
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void run_GivesUpAfterMaxWait() {
+        passwordHasher = new PasswordHasher(4, 1, 4, 50, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertThrows(ServiceBusyException.class, () -> passwordHasher.run(() -> release.await(5, TimeUnit.SECONDS)));
+        release.countDown();
+    }
+
+    @Test
+    void run_PropagatesTaskExceptions() {
+        passwordHasher = new PasswordHasher(4, 1, 4, 5000, 1);
+        assertThrows(IllegalArgumentException.class, () -> passwordHasher.encode(null));
+    }
+}
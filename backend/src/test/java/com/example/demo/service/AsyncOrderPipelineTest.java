@@ -0,0 +1,239 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OrderTicketDTO;
+import com.example.demo.dto.PlaceOrderRequestDTO;
+import com.example.demo.entity.*;
+import com.example.demo.exception.ServiceBusyException;
+import com.example.demo.repository.*;
+import com.example.demo.service.OrderService.OrderOutcome;
+import com.example.demo.service.OrderService.QueuedOrder;
+import com.example.demo.support.TestData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.support.QueryBudget.assertAtMost;
+import static com.example.demo.support.TestData.as;
+import static com.example.demo.support.TestData.signIn;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// A long linger so orders submitted together land in the same batch
+@SpringBootTest(properties = {
+        "app.orders.async.enabled=true",
+        "app.orders.async.max-wait-ms=200"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+@Import(TestData.class)
+class AsyncOrderPipelineTest {
+    @Autowired
+    private TestData testData;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private AsyncOrderService asyncOrderService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void placeOrderBatch_RefusesOnlyTheOrderThatIsShortOfStock() {
+        Product candle = testData.product(5);
+        Product soap = testData.product(5);
+        User alice = userWithLine(candle, 2);
+        User bob = userWithLine(candle, 4);
+        User carol = userWithLine(soap, 1);
+
+        List<OrderOutcome> outcomes = orderService.placeOrderBatch(List.of(
+                queued(alice, candle), queued(bob, candle), queued(carol, soap)));
+
+        assertNotNull(outcomes.get(0).orderId());
+        assertEquals("Not enough stock for product: " + candle.getName(), outcomes.get(1).error());
+        assertNotNull(outcomes.get(2).orderId());
+        assertEquals(3, productRepository.findById(candle.getId()).orElseThrow().getStock());
+        assertEquals(4, productRepository.findById(soap.getId()).orElseThrow().getStock());
+        assertTrue(cartItemRepository.findByUser(alice).isEmpty());
+        assertEquals(1, cartItemRepository.findByUser(bob).size());
+    }
+
+    @Test
+    void placeOrderBatch_SameBuyerTwiceGetsTheLinesOnce() {
+        Product candle = testData.product(5);
+        User alice = userWithLine(candle, 1);
+
+        List<OrderOutcome> outcomes = orderService.placeOrderBatch(List.of(queued(alice, candle), queued(alice, candle)));
+
+        assertNotNull(outcomes.get(0).orderId());
+        assertEquals("No matching cart items found for selected products", outcomes.get(1).error());
+        assertEquals(4, productRepository.findById(candle.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void placeOrderBatch_StatementsDoNotGrowWithBatchSize() {
+        for (int orders : new int[]{2, 20}) {
+            Product candle = testData.product(100);
+            List<QueuedOrder> batch = new ArrayList<>();
+            for (int i = 0; i < orders; i++) {
+                batch.add(queued(userWithLine(candle, 1), candle));
+            }
+            // Locking cart read, locking product read, order and item insert batches, cart delete, plus at
+            // most one id block per sequence. The stock update is a plain JDBC batch and is not counted here
+            List<OrderOutcome> outcomes = assertAtMost(7, () -> orderService.placeOrderBatch(batch));
+            assertTrue(outcomes.stream().allMatch(outcome -> outcome.orderId() != null));
+            assertEquals(100 - orders, productRepository.findById(candle.getId()).orElseThrow().getStock());
+        }
+    }
+
+    @Test
+    void placeOrder_RespondAsyncReturnsATicketToPoll() throws Exception {
+        Product candle = testData.product(5);
+        User alice = userWithLine(candle, 2);
+        String body = "{\"shippingAddress\":\"1 Queue Street\",\"totalAmount\":20.00,\"productIds\":[" + candle.getId() + "]}";
+
+        String response = mockMvc.perform(post("/api/orders/place").with(as(alice))
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andReturn().getResponse().getContentAsString();
+        OrderTicketDTO ticket = objectMapper.readValue(response, OrderTicketDTO.class);
+
+        OrderTicketDTO polled = ticket;
+        for (int attempt = 0; attempt < 100 && OrderTicketDTO.QUEUED.equals(polled.getStatus()); attempt++) {
+            Thread.sleep(50);
+            polled = objectMapper.readValue(mockMvc.perform(get("/api/orders/tickets/" + ticket.getTicketId()).with(as(alice)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(), OrderTicketDTO.class);
+        }
+        assertEquals(OrderTicketDTO.PLACED, polled.getStatus());
+        assertTrue(orderRepository.findById(polled.getOrderId()).isPresent());
+        assertEquals(3, productRepository.findById(candle.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void submit_OrderThatBreaksTheBatchFailsAlone() throws Exception {
+        Product candle = testData.product(5);
+        User alice = userWithLine(candle, 1);
+        User bob = userWithLine(candle, 1);
+        signIn(alice);
+        OrderTicketDTO good = asyncOrderService.submit(request(candle));
+        signIn(bob);
+        PlaceOrderRequestDTO broken = request(candle);
+        broken.setTotalAmount(null);
+        OrderTicketDTO bad = asyncOrderService.submit(broken);
+
+        OrderTicketDTO badResult = asyncOrderService.whenDone(bad.getTicketId()).get(10, TimeUnit.SECONDS);
+        signIn(alice);
+        OrderTicketDTO goodResult = asyncOrderService.whenDone(good.getTicketId()).get(10, TimeUnit.SECONDS);
+
+        assertEquals(OrderTicketDTO.PLACED, goodResult.getStatus());
+        assertEquals(OrderTicketDTO.FAILED, badResult.getStatus());
+        assertEquals(4, productRepository.findById(candle.getId()).orElseThrow().getStock());
+        assertEquals(1, cartItemRepository.findByUser(bob).size());
+    }
+
+    @Test
+    void shutdown_PlacesEveryQueuedOrderAndRefusesNewOnes() throws Exception {
+        // The first batch is held up, so the other orders are still queued when shutdown starts
+        CountDownLatch release = new CountDownLatch(1);
+        OrderService slowOrders = mock(OrderService.class);
+        when(slowOrders.placeOrderBatch(anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            List<QueuedOrder> batch = invocation.getArgument(0);
+            return batch.stream().map(order -> new OrderOutcome(1L, null)).toList();
+        });
+        AsyncOrderService service = new AsyncOrderService(slowOrders, userRepository, 100, 1, 0, 600, 1);
+        service.start();
+        User alice = testData.user();
+        signIn(alice);
+        List<String> ticketIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ticketIds.add(service.submit(request(testData.product(1))).getTicketId());
+        }
+
+        Thread shutdown = new Thread(() -> {
+            try {
+                service.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        shutdown.start();
+        release.countDown();
+        shutdown.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertFalse(shutdown.isAlive());
+        for (String ticketId : ticketIds) {
+            assertEquals(OrderTicketDTO.PLACED, service.getTicket(ticketId).getStatus());
+        }
+        assertThrows(ServiceBusyException.class, () -> service.submit(request(testData.product(1))));
+    }
+
+    @Test
+    void getTicket_OtherUsersTicketsAreNotFound() {
+        Product candle = testData.product(5);
+        User alice = userWithLine(candle, 1);
+        signIn(alice);
+        OrderTicketDTO ticket = asyncOrderService.submit(request(candle));
+
+        signIn(testData.user());
+        assertThrows(IllegalArgumentException.class, () -> asyncOrderService.getTicket(ticket.getTicketId()));
+    }
+
+    private QueuedOrder queued(User user, Product product) {
+        return new QueuedOrder(user.getId(), request(product));
+    }
+
+    private static PlaceOrderRequestDTO request(Product product) {
+        PlaceOrderRequestDTO request = new PlaceOrderRequestDTO();
+        request.setShippingAddress("1 Queue Street");
+        request.setProductIds(List.of(product.getId()));
+        request.setTotalAmount(BigDecimal.TEN);
+        return request;
+    }
+
+    private User userWithLine(Product product, int quantity) {
+        User user = testData.user();
+        CartItem item = new CartItem();
+        item.setUser(user);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        cartItemRepository.save(item);
+        return user;
+    }
+}
@@ -3,19 +3,21 @@ package com.example.demo.service;
 import com.example.demo.dto.AuthResponseDTO;
 import com.example.demo.dto.UserRequestDTO;
 import com.example.demo.entity.User;
+import com.example.demo.exception.ServiceBusyException;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.security.JwtUtil;
+import com.example.demo.security.PasswordHasher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class AuthServiceTest {
@@ -23,6 +25,8 @@ class AuthServiceTest {
     private UserRepository userRepo;
     @Mock
     private JwtUtil jwtUtil;
+    @Spy
+    private PasswordHasher passwordHasher = new PasswordHasher(4, 1, 8, 5000, 1);
     @InjectMocks
     private AuthService authService;
 
@@ -59,11 +63,12 @@ class AuthServiceTest {
         req.email = "user@example.com";
         req.password = "pass";
         User user = new User();
+        user.setId(7L);
         user.setEmail("user@example.com");
         user.setPassword(new BCryptPasswordEncoder().encode("pass"));
         user.setRole("USER");
         when(userRepo.findByEmail("user@example.com")).thenReturn(Optional.of(user));
-        when(jwtUtil.generateToken(user.getEmail(), "USER")).thenReturn("token");
+        when(jwtUtil.generateToken(7L, user.getEmail(), "USER")).thenReturn("token");
         AuthResponseDTO resp = authService.login(req);
         assertEquals("token", resp.getToken());
         assertEquals("USER", resp.getRole());
@@ -82,13 +87,14 @@ class AuthServiceTest {
     void refresh_Success() {
         String refreshToken = "refresh";
         User user = new User();
+        user.setId(7L);
         user.setEmail("user@example.com");
         user.setPassword("pass");
         user.setRole("USER");
         when(jwtUtil.extractEmail(refreshToken)).thenReturn("user@example.com");
         when(jwtUtil.validateRefreshToken(refreshToken)).thenReturn(true);
         when(userRepo.findByEmail("user@example.com")).thenReturn(java.util.Optional.of(user));
-        when(jwtUtil.generateToken("user@example.com", "USER")).thenReturn("token");
+        when(jwtUtil.generateToken(7L, "user@example.com", "USER")).thenReturn("token");
         var resp = authService.refresh(refreshToken);
         assertEquals("token", resp.getToken());
         assertEquals("USER", resp.getRole());
@@ -141,4 +147,58 @@ class AuthServiceTest {
         when(userRepo.findByEmail("admin@example.com")).thenReturn(java.util.Optional.of(new User()));
         assertThrows(IllegalArgumentException.class, () -> authService.registerAdmin(req));
     }
+
+    @Test
+    void login_RehashesPasswordMadeAtDifferentCost() {
+        UserRequestDTO req = new UserRequestDTO();
+        req.email = "user@example.com";
+        req.password = "pass";
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("user@example.com");
+        user.setPassword(new BCryptPasswordEncoder(5).encode("pass"));
+        user.setRole("USER");
+        when(userRepo.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+        authService.login(req);
+        assertTrue(user.getPassword().startsWith("$2a$04$"));
+        assertTrue(new BCryptPasswordEncoder().matches("pass", user.getPassword()));
+        verify(userRepo).save(user);
+    }
+
+    @Test
+    void login_KeepsPasswordMadeAtConfiguredCost() {
+        UserRequestDTO req = new UserRequestDTO();
+        req.email = "user@example.com";
+        req.password = "pass";
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("user@example.com");
+        String hash = new BCryptPasswordEncoder(4).encode("pass");
+        user.setPassword(hash);
+        user.setRole("USER");
+        when(userRepo.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+        authService.login(req);
+        assertEquals(hash, user.getPassword());
+        verify(userRepo, never()).save(any(User.class));
+    }
+
+    @Test
+    void login_SucceedsWhenRehashIsRefused() {
+        UserRequestDTO req = new UserRequestDTO();
+        req.email = "user@example.com";
+        req.password = "pass";
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("user@example.com");
+        String hash = new BCryptPasswordEncoder(5).encode("pass");
+        user.setPassword(hash);
+        user.setRole("USER");
+        when(userRepo.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+        when(jwtUtil.generateToken(7L, "user@example.com", "USER")).thenReturn("token");
+        doThrow(new ServiceBusyException("Too many password checks in progress", 1)).when(passwordHasher).encode("pass");
+        AuthResponseDTO response = authService.login(req);
+        assertEquals("token", response.getToken());
+        assertEquals(hash, user.getPassword());
+        verify(userRepo, never()).save(any(User.class));
+    }
 }
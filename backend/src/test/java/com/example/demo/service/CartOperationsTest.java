@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CartDTO;
+import com.example.demo.dto.CartItemResponseDTO;
+import com.example.demo.dto.CartOperationDTO;
+import com.example.demo.entity.*;
+import com.example.demo.repository.CartItemRepository;
+import com.example.demo.support.TestData;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({CartService.class, ProductCache.class, StockReservationService.class, TestData.class})
+class CartOperationsTest {
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private TestData testData;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = testData.user();
+        TestData.signIn(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void applyOperations_AddSetRemoveInOneCall() {
+        Product candle = testData.product(10);
+        Product matches = testData.product(10);
+        Product holder = testData.product(10);
+        Product wick = testData.product(10);
+        line(candle, 2);
+        line(matches, 1);
+        line(holder, 4);
+
+        CartDTO cart = cartService.applyOperations(List.of(
+                op(CartOperationDTO.Op.ADD, candle, 3),
+                op(CartOperationDTO.Op.SET, matches, 7),
+                op(CartOperationDTO.Op.REMOVE, holder, null),
+                op(CartOperationDTO.Op.ADD, wick, 1),
+                op(CartOperationDTO.Op.ADD, wick, 1)));
+
+        assertEquals(Map.of(candle.getId(), 5, matches.getId(), 7, wick.getId(), 2), quantities(cart));
+        assertEquals(14, cart.getTotalQuantity());
+        assertEquals(3, cartItemRepository.findByUser(user).size());
+    }
+
+    @Test
+    void applyOperations_RemoveThenAddReusesTheRow() {
+        Product candle = testData.product(10);
+        line(candle, 2);
+
+        CartDTO cart = cartService.applyOperations(List.of(
+                op(CartOperationDTO.Op.REMOVE, candle, null),
+                op(CartOperationDTO.Op.ADD, candle, 3)));
+        entityManager.flush();
+
+        assertEquals(Map.of(candle.getId(), 3), quantities(cart));
+    }
+
+    @Test
+    void applyOperations_StockCheckedOnFinalQuantityAndNothingApplied() {
+        Product candle = testData.product(5);
+        Product matches = testData.product(5);
+        line(candle, 1);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(List.of(
+                op(CartOperationDTO.Op.SET, matches, 2),
+                op(CartOperationDTO.Op.ADD, candle, 3),
+                op(CartOperationDTO.Op.ADD, candle, 2))));
+        assertEquals("Requested quantity exceeds available stock.", ex.getMessage());
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(1, cartItemRepository.findByUser(user).size());
+    }
+
+    @Test
+    void applyOperations_InvalidBatches_Throw() {
+        Product candle = testData.product(5);
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(List.of(op(CartOperationDTO.Op.ADD, candle, 0))));
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(List.of(new CartOperationDTO())));
+        CartOperationDTO unknown = op(CartOperationDTO.Op.ADD, candle, 1);
+        unknown.setProductId(-1L);
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(List.of(unknown)));
+        List<CartOperationDTO> tooMany = new ArrayList<>();
+        for (int i = 0; i <= CartService.MAX_OPERATIONS; i++) {
+            tooMany.add(op(CartOperationDTO.Op.ADD, candle, 1));
+        }
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(tooMany));
+    }
+
+    @Test
+    void applyOperations_AddsPastTheLineLimitAreRejected() {
+        Product candle = testData.product(Integer.MAX_VALUE);
+        line(candle, 2);
+
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(List.of(
+                op(CartOperationDTO.Op.ADD, candle, Integer.MAX_VALUE))));
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(List.of(
+                op(CartOperationDTO.Op.ADD, candle, CartService.MAX_LINE_QUANTITY - 2),
+                op(CartOperationDTO.Op.ADD, candle, 1))));
+        assertEquals("At most " + CartService.MAX_LINE_QUANTITY + " of a product per cart.", ex.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> cartService.updateCartItem(candle.getId(), -1));
+    }
+
+    private static Map<Long, Integer> quantities(CartDTO cart) {
+        return cart.getItems().stream().collect(Collectors.toMap(CartItemResponseDTO::getProductId, CartItemResponseDTO::getQuantity));
+    }
+
+    private static CartOperationDTO op(CartOperationDTO.Op type, Product product, Integer quantity) {
+        CartOperationDTO operation = new CartOperationDTO();
+        operation.setOp(type);
+        operation.setProductId(product.getId());
+        operation.setQuantity(quantity);
+        return operation;
+    }
+
+    private void line(Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setUser(user);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        entityManager.persist(item);
+    }
+}
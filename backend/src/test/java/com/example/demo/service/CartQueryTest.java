@@ -0,0 +1,90 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CartDTO;
+import com.example.demo.dto.CartItemResponseDTO;
+import com.example.demo.entity.*;
+import com.example.demo.support.TestData;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CartService.class, ProductCache.class, StockReservationService.class, TestData.class})
+class CartQueryTest {
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private TestData testData;
+
+    private Statistics statistics;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        user = testData.user();
+        TestData.signIn(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getCart_ExactTotalsAndStockFlagsInOneStatement() {
+        line(testData.product("Candle", new BigDecimal("19.99"), 10), 3);
+        line(testData.product("Matches", new BigDecimal("0.10"), 10), 3);
+        line(testData.product("Holder", new BigDecimal("5.00"), 2), 5);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        CartDTO cart = cartService.getCart();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(List.of("Candle", "Matches", "Holder"), cart.getItems().stream().map(CartItemResponseDTO::getProductName).toList());
+        assertEquals(new BigDecimal("59.97"), cart.getItems().get(0).getLineTotal());
+        assertEquals(new BigDecimal("0.30"), cart.getItems().get(1).getLineTotal());
+        assertEquals(new BigDecimal("85.27"), cart.getSubtotal());
+        assertEquals(11, cart.getTotalQuantity());
+        assertFalse(cart.getItems().get(0).isOutOfStock());
+        assertTrue(cart.getItems().get(2).isOutOfStock());
+        assertEquals(2, cart.getItems().get(2).getStock());
+        assertTrue(cart.isHasOutOfStockItems());
+    }
+
+    @Test
+    void getCart_Empty() {
+        CartDTO cart = cartService.getCart();
+        assertTrue(cart.getItems().isEmpty());
+        assertEquals(BigDecimal.ZERO, cart.getSubtotal());
+        assertFalse(cart.isHasOutOfStockItems());
+    }
+
+    private void line(Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setUser(user);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        entityManager.persist(item);
+    }
+}
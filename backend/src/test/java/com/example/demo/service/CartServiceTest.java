@@ -1,11 +1,15 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CartDTO;
 import com.example.demo.dto.CartItemRequestDTO;
 import com.example.demo.dto.CartItemResponseDTO;
 import com.example.demo.entity.CartItem;
 import com.example.demo.entity.Product;
+import com.example.demo.entity.User;
 import com.example.demo.repository.CartItemRepository;
 import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -14,12 +18,12 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class CartServiceTest {
@@ -28,78 +32,98 @@ class CartServiceTest {
     @Mock
     private ProductRepository productRepository;
     @Mock
+    private UserRepository userRepository;
+    @Mock
+    private ProductCache productCache;
+    @Mock
+    private StockReservationService stockReservationService;
+    @Mock
     private Authentication authentication;
     @InjectMocks
     private CartService cartService;
 
+    private User user;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        user = new User();
+        user.setId(1L);
+        user.setEmail("user@example.com");
         SecurityContextHolder.getContext().setAuthentication(authentication);
         when(authentication.getName()).thenReturn("user@example.com");
+        when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
     }
 
     @Test
     void addItemToCart_NewItem_Success() {
-        Product product = new Product();
-        product.setId(1L);
-        product.setStock(10);
+        Product product = product(1L, 10);
         CartItemRequestDTO req = new CartItemRequestDTO();
         req.setProductId(1L);
         req.setQuantity(2);
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        when(cartItemRepository.findByUserEmailAndProductId("user@example.com", 1L)).thenReturn(Optional.empty());
+        when(productCache.get(1L)).thenReturn(Optional.of(product));
+        when(cartItemRepository.findByUserAndProductId(user, 1L)).thenReturn(Optional.empty());
         cartService.addItemToCart(req);
-        verify(cartItemRepository).save(any(CartItem.class));
+        verify(stockReservationService).hold(argThat(lines -> lines.size() == 1), eq(List.of()));
+        verify(cartItemRepository).save(argThat(item -> item.getQuantity() == 2 && item.getProduct() == product));
     }
 
     @Test
-    void getCartItems_ReturnsList() {
-        CartItem item = new CartItem();
-        Product product = new Product();
-        product.setId(1L);
-        item.setProduct(product);
-        item.setId(1L);
-        item.setQuantity(2);
-        item.setUserEmail("user@example.com");
-        when(cartItemRepository.findByUserEmail("user@example.com")).thenReturn(Arrays.asList(item));
-        List<CartItemResponseDTO> result = cartService.getCartItems();
-        assertEquals(1, result.size());
-        assertEquals(1L, result.get(0).getProductId());
+    void getCart_ReturnsLinesAndServerSideTotals() {
+        CartItemResponseDTO candle = new CartItemResponseDTO(1L, 1L, "Candle", null, new BigDecimal("4.50"), 10, 2);
+        CartItemResponseDTO soap = new CartItemResponseDTO(2L, 2L, "Soap", null, new BigDecimal("3.00"), 1, 3);
+        when(cartItemRepository.findCartLines(1L)).thenReturn(Arrays.asList(candle, soap));
+        CartDTO cart = cartService.getCart();
+        assertEquals(2, cart.getItems().size());
+        assertEquals(1L, cart.getItems().get(0).getProductId());
+        assertEquals(new BigDecimal("9.00"), cart.getItems().get(0).getLineTotal());
+        assertEquals(new BigDecimal("9.00"), cart.getItems().get(1).getLineTotal());
+        assertEquals(new BigDecimal("18.00"), cart.getSubtotal());
+        assertEquals(5, cart.getTotalQuantity());
+        assertFalse(cart.getItems().get(0).isOutOfStock());
+        assertTrue(cart.getItems().get(1).isOutOfStock());
+        assertTrue(cart.isHasOutOfStockItems());
+    }
+
+    @Test
+    void getCart_Empty_HasZeroSubtotal() {
+        when(cartItemRepository.findCartLines(1L)).thenReturn(List.of());
+        CartDTO cart = cartService.getCart();
+        assertTrue(cart.getItems().isEmpty());
+        assertEquals(BigDecimal.ZERO, cart.getSubtotal());
+        assertFalse(cart.isHasOutOfStockItems());
     }
 
     @Test
     void updateCartItem_UpdatesQuantity() {
-        Product product = new Product();
-        product.setId(1L);
-        product.setStock(10);
-        CartItem item = new CartItem();
-        item.setProduct(product);
-        item.setQuantity(2);
-        when(cartItemRepository.findByUserEmailAndProductId("user@example.com", 1L)).thenReturn(Optional.of(item));
+        CartItem item = line(product(1L, 10), 2);
+        when(cartItemRepository.findByUserAndProductId(user, 1L)).thenReturn(Optional.of(item));
         cartService.updateCartItem(1L, 5);
+        verify(stockReservationService).hold(List.of(item), List.of());
         verify(cartItemRepository).save(item);
         assertEquals(5, item.getQuantity());
     }
 
     @Test
     void removeCartItem_Deletes() {
-        Product product = new Product();
-        product.setId(1L);
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        Product product = product(1L, 10);
+        CartItem item = line(product, 2);
+        when(productCache.get(1L)).thenReturn(Optional.of(product));
+        when(cartItemRepository.findByUserAndProductId(user, 1L)).thenReturn(Optional.of(item));
         cartService.removeCartItem(1L);
-        verify(cartItemRepository).deleteByUserEmailAndProductId("user@example.com", 1L);
+        verify(stockReservationService).release(List.of(item));
+        verify(cartItemRepository).deleteAllInBatch(List.of(item));
     }
 
     @Test
     void updateCartItemByEmailAndProductId_UpdatesQuantity() {
-        Product product = new Product();
-        product.setId(2L);
-        product.setStock(10);
-        CartItem item = new CartItem();
-        item.setProduct(product);
-        item.setQuantity(2);
-        when(cartItemRepository.findByUserEmailAndProductId("user@example.com", 2L)).thenReturn(Optional.of(item));
+        CartItem item = line(product(2L, 10), 2);
+        when(cartItemRepository.findByUserAndProductId(user, 2L)).thenReturn(Optional.of(item));
         cartService.updateCartItemByEmailAndProductId(2L, 7);
         verify(cartItemRepository).save(item);
         assertEquals(7, item.getQuantity());
@@ -107,65 +131,85 @@ class CartServiceTest {
 
     @Test
     void updateCartItemByEmailAndProductId_NotFound_Throws() {
-        when(cartItemRepository.findByUserEmailAndProductId("user@example.com", 2L)).thenReturn(Optional.empty());
+        when(cartItemRepository.findByUserAndProductId(user, 2L)).thenReturn(Optional.empty());
         assertThrows(java.util.NoSuchElementException.class, () -> cartService.updateCartItemByEmailAndProductId(2L, 1));
     }
 
     @Test
     void updateCartItem_StockExceeded_Throws() {
-        Product product = new Product();
-        product.setId(1L);
-        product.setStock(2);
-        CartItem item = new CartItem();
-        item.setProduct(product);
-        item.setQuantity(2);
-        when(cartItemRepository.findByUserEmailAndProductId("user@example.com", 1L)).thenReturn(Optional.of(item));
+        CartItem item = line(product(1L, 2), 2);
+        when(cartItemRepository.findByUserAndProductId(user, 1L)).thenReturn(Optional.of(item));
+        doThrow(new IllegalArgumentException("Requested quantity exceeds available stock."))
+                .when(stockReservationService).hold(List.of(item), List.of());
         assertThrows(IllegalArgumentException.class, () -> cartService.updateCartItem(1L, 5));
+        verify(cartItemRepository, never()).save(any());
     }
 
     @Test
     void removeAllCartItemsForCurrentUser_DeletesAll() {
+        List<CartItem> items = List.of(line(product(1L, 10), 1), line(product(2L, 10), 3));
+        when(cartItemRepository.findByUserForUpdate(user)).thenReturn(items);
         cartService.removeAllCartItemsForCurrentUser();
-        verify(cartItemRepository).deleteAllByUserEmail("user@example.com");
+        verify(stockReservationService).release(items);
+        verify(cartItemRepository).deleteAllInBatch(items);
     }
 
     @Test
     void deleteCartItemsByIds_DeletesBatch() {
         List<Long> ids = java.util.Arrays.asList(1L, 2L);
+        List<CartItem> items = List.of(line(product(1L, 10), 1), line(product(2L, 10), 3));
+        when(cartItemRepository.findAllByIdForUpdate(ids)).thenReturn(items);
         cartService.deleteCartItemsByIds(ids);
-        verify(cartItemRepository).deleteAllByIdInBatch(ids);
+        verify(cartItemRepository).deleteAllInBatch(items);
     }
 
     @Test
     void deleteCartItemsByIds_NullOrEmpty_DoesNothing() {
         cartService.deleteCartItemsByIds(null);
         cartService.deleteCartItemsByIds(java.util.Collections.emptyList());
-        verify(cartItemRepository, never()).deleteAllByIdInBatch(any());
+        verify(cartItemRepository, never()).findAllByIdForUpdate(any());
+        verify(cartItemRepository, never()).deleteAllInBatch(any());
     }
 
     @Test
     void addItemToCart_StockExceeded_Throws() {
-        Product product = new Product();
-        product.setId(1L);
-        product.setStock(2);
+        Product product = product(1L, 2);
         CartItemRequestDTO req = new CartItemRequestDTO();
         req.setProductId(1L);
         req.setQuantity(5);
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        when(cartItemRepository.findByUserEmailAndProductId("user@example.com", 1L)).thenReturn(Optional.empty());
+        when(productCache.get(1L)).thenReturn(Optional.of(product));
+        when(cartItemRepository.findByUserAndProductId(user, 1L)).thenReturn(Optional.empty());
+        doThrow(new IllegalArgumentException("Requested quantity exceeds available stock."))
+                .when(stockReservationService).hold(anyCollection(), anyCollection());
         assertThrows(IllegalArgumentException.class, () -> cartService.addItemToCart(req));
+        verify(cartItemRepository, never()).save(any());
     }
 
     @Test
     void updateCartItem_NotFound_Throws() {
-        when(cartItemRepository.findByUserEmailAndProductId("user@example.com", 1L)).thenReturn(Optional.empty());
+        when(cartItemRepository.findByUserAndProductId(user, 1L)).thenReturn(Optional.empty());
         assertThrows(java.util.NoSuchElementException.class, () -> cartService.updateCartItem(1L, 1));
     }
 
     @Test
     void removeCartItem_ProductNotFound_Throws() {
-        when(productRepository.findById(1L)).thenReturn(Optional.empty());
+        when(productCache.get(1L)).thenReturn(Optional.empty());
         assertThrows(IllegalArgumentException.class, () -> cartService.removeCartItem(1L));
     }
-}
 
+    private static Product product(Long id, int stock) {
+        Product product = new Product();
+        product.setId(id);
+        product.setPrice(BigDecimal.TEN);
+        product.setStock(stock);
+        return product;
+    }
+
+    private CartItem line(Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setUser(user);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return item;
+    }
+}
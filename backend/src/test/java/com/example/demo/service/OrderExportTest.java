@@ -0,0 +1,93 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OrderResponseDTO;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderItem;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.User;
+import com.example.demo.support.TestData;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({OrderService.class, StockReservationService.class, TestData.class})
+class OrderExportTest {
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private TestData testData;
+
+    private User user;
+    private final List<Order> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = testData.user();
+        Product product = testData.product("Tea, green", BigDecimal.TEN, 100);
+        String[] statuses = {"PENDING", "DELIVERED", "PENDING", "CANCELLED"};
+        for (int i = 0; i < statuses.length; i++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setStatus(statuses[i]);
+            order.setTotalAmount(BigDecimal.valueOf(20));
+            entityManager.persist(order);
+            // The last order has no items
+            for (int line = 0; line < 3 - i; line++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(line + 1);
+                item.setPrice(BigDecimal.TEN);
+                entityManager.persist(item);
+            }
+            orders.add(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private List<OrderResponseDTO> export(String status, Instant from, Instant to) {
+        List<OrderResponseDTO> exported = new ArrayList<>();
+        orderService.exportOrders(status, from, to, order -> {
+            assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+            exported.add(order);
+        });
+        return exported;
+    }
+
+    @Test
+    void exportOrders_GroupsItemsPerOrderInCreationOrder() {
+        List<OrderResponseDTO> exported = export(null, null, null);
+        assertEquals(orders.stream().map(Order::getId).toList(), exported.stream().map(OrderResponseDTO::getId).toList());
+        assertEquals(List.of(3, 2, 1, 0), exported.stream().map(o -> o.getItems().size()).toList());
+        assertEquals("Tea, green", exported.get(0).getItems().get(0).getProductName());
+        assertEquals(user.getEmail(), exported.get(0).getUserEmail());
+    }
+
+    @Test
+    void exportOrders_FiltersByStatusAndDateRange() {
+        List<OrderResponseDTO> pending = export("PENDING", null, null);
+        assertEquals(List.of(orders.get(0).getId(), orders.get(2).getId()), pending.stream().map(OrderResponseDTO::getId).toList());
+
+        Instant now = Instant.now();
+        assertEquals(4, export(null, now.minus(1, ChronoUnit.HOURS), now.plus(1, ChronoUnit.HOURS)).size());
+        assertTrue(export(null, now.plus(1, ChronoUnit.HOURS), null).isEmpty());
+        assertTrue(export(null, null, now.minus(1, ChronoUnit.HOURS)).isEmpty());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OrderPageDTO;
+import com.example.demo.dto.OrderResponseDTO;
+import com.example.demo.entity.*;
+import com.example.demo.support.TestData;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderService.class, StockReservationService.class, TestData.class})
+class OrderQueryCountTest {
+    private static final int ORDERS_PER_USER = 5;
+    private static final int ITEMS_PER_ORDER = 4;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private TestData testData;
+
+    private Statistics statistics;
+    private User alice;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+            products.add(testData.product("Product " + i, BigDecimal.TEN, 100));
+        }
+        alice = testData.user();
+        User bob = testData.user();
+        for (User user : List.of(alice, bob)) {
+            for (int o = 0; o < ORDERS_PER_USER; o++) {
+                Order order = new Order();
+                order.setUser(user);
+                order.setStatus(o % 2 == 0 ? "PENDING" : "DELIVERED");
+                order.setTotalAmount(BigDecimal.valueOf(40));
+                entityManager.persist(order);
+                for (Product product : products) {
+                    OrderItem item = new OrderItem();
+                    item.setOrder(order);
+                    item.setProduct(product);
+                    item.setQuantity(1);
+                    item.setPrice(product.getPrice());
+                    entityManager.persist(item);
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getAllOrdersSafe_SingleStatement() {
+        List<OrderResponseDTO> orders = orderService.getAllOrdersSafe();
+        assertEquals(2 * ORDERS_PER_USER, orders.size());
+        assertEquals(ITEMS_PER_ORDER, orders.get(0).getItems().size());
+        assertEquals("Product 0", orders.get(0).getItems().get(0).getProductName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getOrdersByStatusSafe_SingleStatement() {
+        List<OrderResponseDTO> orders = orderService.getOrdersByStatusSafe("PENDING");
+        assertEquals(6, orders.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getOrdersByUserIdSafe_ExistenceCheckPlusOneStatement() {
+        List<OrderResponseDTO> orders = orderService.getOrdersByUserIdSafe(alice.getId());
+        assertEquals(ORDERS_PER_USER, orders.size());
+        orders.forEach(order -> assertEquals(alice.getEmail(), order.getUserEmail()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getCurrentUserOrdersSafe_UserLookupPlusOneStatement() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(alice.getEmail(), null, List.of()));
+        List<OrderResponseDTO> orders = orderService.getCurrentUserOrdersSafe();
+        assertEquals(ORDERS_PER_USER, orders.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getCurrentUserOrdersSafe_PrincipalWithUserIdSkipsLookup() {
+        TestData.signIn(alice);
+        List<OrderResponseDTO> orders = orderService.getCurrentUserOrdersSafe();
+        assertEquals(ORDERS_PER_USER, orders.size());
+        orders.forEach(order -> assertEquals(alice.getEmail(), order.getUserEmail()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getAllOrdersPage_TwoStatementsPerPage() {
+        OrderPageDTO page = orderService.getAllOrdersPage(null, 3);
+        assertEquals(3, page.getItems().size());
+        assertNotNull(page.getNextCursor());
+        assertEquals(ITEMS_PER_ORDER, page.getItems().get(0).getItems().size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getCurrentUserOrdersPage_CursorWalksWholeHistoryNewestFirst() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(alice.getEmail(), null, List.of()));
+        List<OrderResponseDTO> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            statistics.clear();
+            OrderPageDTO page = orderService.getCurrentUserOrdersPage(cursor, 2);
+            assertEquals(3, statistics.getPrepareStatementCount());
+            seen.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(3, pages);
+        assertEquals(ORDERS_PER_USER, seen.size());
+        assertEquals(ORDERS_PER_USER, new HashSet<>(seen.stream().map(OrderResponseDTO::getId).toList()).size());
+        Comparator<OrderResponseDTO> newestFirst = Comparator.comparing(OrderResponseDTO::getCreatedAt)
+                .thenComparing(OrderResponseDTO::getId).reversed();
+        assertEquals(seen.stream().sorted(newestFirst).toList(), seen);
+        seen.forEach(order -> assertEquals(alice.getEmail(), order.getUserEmail()));
+    }
+
+    @Test
+    void getAllOrdersPage_InvalidCursorOrLimit_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getAllOrdersPage("not-a-cursor", 5));
+        assertThrows(IllegalArgumentException.class, () -> orderService.getAllOrdersPage(null, 0));
+    }
+}
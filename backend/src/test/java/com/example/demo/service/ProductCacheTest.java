@@ -0,0 +1,97 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CacheStatsDTO;
+import com.example.demo.entity.Product;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.support.TestData;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Each lookup runs outside a test transaction, so repeated reads can only be shared through the second-level cache
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "product.cache.max-size=2"
+})
+@Import({ProductCache.class, TestData.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductCacheTest {
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private TestData testData;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.getCache().evictAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void get_LoadsOnceThenServesFromTheProductRegion() {
+        Long id = testData.product(5).getId();
+        entityManagerFactory.getCache().evictAll();
+        productCache.get(id).orElseThrow();
+
+        statistics.clear();
+        long hits = productCache.getStats().getHits();
+        assertEquals(5, productCache.get(id).orElseThrow().getStock());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getDomainDataRegionStatistics("product").getHitCount());
+        assertEquals(hits + 1, productCache.getStats().getHits());
+    }
+
+    @Test
+    void get_StaysWithinTheConfiguredSize() {
+        List<Long> ids = List.of(testData.product(5).getId(), testData.product(5).getId(), testData.product(5).getId());
+        entityManagerFactory.getCache().evictAll();
+        long evictions = productCache.getStats().getEvictions();
+        ids.forEach(productCache::get);
+        productCache.cleanUp();
+
+        CacheStatsDTO stats = productCache.getStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(evictions + 1, stats.getEvictions());
+    }
+
+    @Test
+    void get_MissingProductIsNotCached() {
+        assertTrue(productCache.get(Long.MAX_VALUE).isEmpty());
+        Long id = testData.product(5).getId();
+        assertTrue(productCache.get(id).isPresent());
+    }
+
+    @Test
+    void entityUpdate_NextLookupSeesTheNewRow() {
+        Product product = testData.product(5);
+        productCache.get(product.getId());
+
+        product.setStock(8);
+        productRepository.save(product);
+
+        assertEquals(8, productCache.get(product.getId()).orElseThrow().getStock());
+    }
+}
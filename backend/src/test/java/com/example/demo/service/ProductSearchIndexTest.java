@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import com.example.demo.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+    @Mock
+    private ProductRepository productRepository;
+    @InjectMocks
+    private ProductSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private Product product(long id, String name, String description) {
+        Product p = new Product();
+        p.setId(id);
+        p.setName(name);
+        p.setDescription(description);
+        return p;
+    }
+
+    @Test
+    void search_RanksNameMatchesAboveDescriptionMatches() {
+        searchIndex.index(product(1L, "Gaming Mouse", "Works with any laptop"));
+        searchIndex.index(product(2L, "Laptop X", "A powerful laptop"));
+        searchIndex.index(product(3L, "Desk Lamp", "Warm light"));
+        assertEquals(Arrays.asList(2L, 1L), searchIndex.search("laptop"));
+    }
+
+    @Test
+    void search_ToleratesSingleTypo() {
+        searchIndex.index(product(1L, "Laptop X", null));
+        searchIndex.index(product(2L, "Keyboard", null));
+        assertEquals(List.of(1L), searchIndex.search("lpatop"));
+        assertEquals(List.of(2L), searchIndex.search("keybord"));
+        assertTrue(searchIndex.search("kxyzoard").isEmpty());
+    }
+
+    @Test
+    void search_MatchesPrefixes() {
+        searchIndex.index(product(1L, "Chocolate bar", null));
+        assertEquals(List.of(1L), searchIndex.search("choc"));
+    }
+
+    @Test
+    void search_ExactMatchOutranksTypoMatch() {
+        searchIndex.index(product(1L, "Rose tea", null));
+        searchIndex.index(product(2L, "Rise cereal", null));
+        assertEquals(Arrays.asList(1L, 2L), searchIndex.search("rose"));
+    }
+
+    @Test
+    void index_ReplacesPreviousVersionAndRemoveDropsProduct() {
+        searchIndex.index(product(1L, "Peach tea", null));
+        searchIndex.index(product(1L, "Ocean print", null));
+        assertTrue(searchIndex.search("peach").isEmpty());
+        assertEquals(List.of(1L), searchIndex.search("ocean"));
+        searchIndex.remove(1L);
+        assertTrue(searchIndex.search("ocean").isEmpty());
+        assertEquals(0, searchIndex.size());
+    }
+
+    @Test
+    void indexAfterCommit_AppliesOnlyOnceCommitted() {
+        searchIndex.index(product(1L, "Peach tea", null));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            searchIndex.indexAfterCommit(product(2L, "Ocean print", null));
+            searchIndex.removeAfterCommit(1L);
+            assertEquals(List.of(1L), searchIndex.search("peach"));
+            assertTrue(searchIndex.search("ocean").isEmpty());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(searchIndex.search("peach").isEmpty());
+        assertEquals(List.of(2L), searchIndex.search("ocean"));
+    }
+
+    @Test
+    void search_BlankQuery_ReturnsEmpty() {
+        searchIndex.index(product(1L, "Laptop", null));
+        assertTrue(searchIndex.search("  ").isEmpty());
+        assertTrue(searchIndex.search(null).isEmpty());
+    }
+
+    @Test
+    void rebuild_LoadsAllPagesAndMarksReady() {
+        when(productRepository.findPageAfter(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(product(1L, "Laptop", null), product(2L, "Phone", null)));
+        assertFalse(searchIndex.isReady());
+        searchIndex.rebuild();
+        assertTrue(searchIndex.isReady());
+        assertEquals(2, searchIndex.size());
+    }
+
+    @Test
+    void withinOneEdit_CoversAllEditKinds() {
+        assertTrue(ProductSearchIndex.withinOneEdit("laptop", "laptop"));
+        assertTrue(ProductSearchIndex.withinOneEdit("laptop", "laptops"));
+        assertTrue(ProductSearchIndex.withinOneEdit("laptop", "lapop"));
+        assertTrue(ProductSearchIndex.withinOneEdit("laptop", "laptap"));
+        assertTrue(ProductSearchIndex.withinOneEdit("laptop", "lpatop"));
+        assertFalse(ProductSearchIndex.withinOneEdit("laptop", "lpatpo"));
+        assertFalse(ProductSearchIndex.withinOneEdit("laptop", "lap"));
+    }
+}
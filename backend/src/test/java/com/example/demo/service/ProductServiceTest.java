@@ -3,24 +3,30 @@ package com.example.demo.service;
 import com.example.demo.entity.Product;
 import com.example.demo.repository.CategoryRepository;
 import com.example.demo.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
+import com.example.demo.dto.ProductCursorPageDTO;
 import com.example.demo.dto.ProductDTO;
 import com.example.demo.entity.Category;
 
@@ -29,6 +35,12 @@ class ProductServiceTest {
     private ProductRepository productRepository;
     @Mock
     private CategoryRepository categoryRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private ProductSearchIndex searchIndex;
+    @Mock
+    private ProductCache productCache;
     @InjectMocks
     private ProductService productService;
 
@@ -38,14 +50,51 @@ class ProductServiceTest {
     }
 
     @Test
-    void getAllProducts_ReturnsList() {
+    void getProductsAfter_LastPage_HasNoCursor() {
         Product p = new Product();
         p.setId(1L);
         p.setName("TestProduct");
-        when(productRepository.findAll()).thenReturn(Arrays.asList(p));
-        List<Product> result = productService.getAllProducts();
-        assertEquals(1, result.size());
-        assertEquals("TestProduct", result.get(0).getName());
+        when(productRepository.findPageAfter(0L, Limit.of(3))).thenReturn(Arrays.asList(p));
+        ProductCursorPageDTO result = productService.getProductsAfter(null, 2);
+        assertEquals(1, result.getItems().size());
+        assertEquals("TestProduct", result.getItems().get(0).getName());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getProductsAfter_MoreRows_ReturnsCursor() {
+        Product p1 = new Product();
+        p1.setId(11L);
+        Product p2 = new Product();
+        p2.setId(12L);
+        Product p3 = new Product();
+        p3.setId(13L);
+        when(productRepository.findPageAfter(10L, Limit.of(3))).thenReturn(Arrays.asList(p1, p2, p3));
+        ProductCursorPageDTO result = productService.getProductsAfter(10L, 2);
+        assertEquals(2, result.getItems().size());
+        assertEquals(12L, result.getNextCursor());
+    }
+
+    @Test
+    void getProductsAfter_LimitCappedAndValidated() {
+        when(productRepository.findPageAfter(0L, Limit.of(ProductService.MAX_PAGE_LIMIT + 1))).thenReturn(List.of());
+        productService.getProductsAfter(0L, 10_000);
+        verify(productRepository).findPageAfter(0L, Limit.of(ProductService.MAX_PAGE_LIMIT + 1));
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsAfter(0L, 0));
+    }
+
+    @Test
+    void streamAllProducts_WritesAndDetachesEachRow() {
+        Product p1 = new Product();
+        p1.setId(1L);
+        Product p2 = new Product();
+        p2.setId(2L);
+        when(productRepository.streamAllOrderById()).thenReturn(Stream.of(p1, p2));
+        List<Long> written = new ArrayList<>();
+        productService.streamAllProducts(p -> written.add(p.getId()));
+        assertEquals(Arrays.asList(1L, 2L), written);
+        verify(entityManager).detach(p1);
+        verify(entityManager).detach(p2);
     }
 
     @Test
@@ -53,11 +102,17 @@ class ProductServiceTest {
         Product p = new Product();
         p.setId(2L);
         p.setName("Prod2");
-        when(productRepository.findById(2L)).thenReturn(Optional.of(p));
+        when(productCache.get(2L)).thenReturn(Optional.of(p));
         Product result = productService.getProductById(2L);
         assertEquals("Prod2", result.getName());
     }
 
+    @Test
+    void getProductById_NotFound_Throws() {
+        when(productCache.get(3L)).thenReturn(Optional.empty());
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductById(3L));
+    }
+
     @Test
     void getProductsByCategory_ReturnsPage() {
         Product p = new Product();
@@ -80,6 +135,21 @@ class ProductServiceTest {
         assertEquals(1, result.getTotalElements());
     }
 
+    @Test
+    void searchProducts_UsesIndexRankingWhenReady() {
+        Product p1 = new Product();
+        p1.setId(7L);
+        Product p2 = new Product();
+        p2.setId(3L);
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.search("laptop")).thenReturn(Arrays.asList(7L, 3L, 9L));
+        when(productRepository.findAllById(Arrays.asList(7L, 3L))).thenReturn(Arrays.asList(p2, p1));
+        Page<Product> result = productService.searchProducts("laptop", 0, 2);
+        assertEquals(3, result.getTotalElements());
+        assertEquals(Arrays.asList(7L, 3L), result.getContent().stream().map(Product::getId).toList());
+        verify(productRepository, never()).findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(any(), any(), any());
+    }
+
     @Test
     void addProduct_Success() throws Exception {
         ProductDTO dto = new ProductDTO();
@@ -101,6 +171,7 @@ class ProductServiceTest {
         Product result = productService.addProduct(dto, file);
         assertEquals("NewProduct", result.getName());
         verify(productRepository).save(any(Product.class));
+        verify(searchIndex).indexAfterCommit(saved);
     }
 
     @Test
@@ -166,6 +237,7 @@ class ProductServiceTest {
         when(productRepository.findById(1L)).thenReturn(Optional.of(prod));
         productService.deleteProduct(1L);
         verify(productRepository).delete(prod);
+        verify(searchIndex).removeAfterCommit(1L);
     }
 
     @Test
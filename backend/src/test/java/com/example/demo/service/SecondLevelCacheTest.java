@@ -0,0 +1,122 @@
+package com.example.demo.service;
+
+import com.example.demo.config.SecondLevelCacheStatistics;
+import com.example.demo.dto.CacheStatsDTO;
+import com.example.demo.dto.CategoryDTO;
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Product;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.support.TestData;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Each call runs in its own transaction, so cache entries are only shared through the second-level cache
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CategoryService.class, ProductCache.class, SecondLevelCacheStatistics.class, TestData.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+    @Autowired
+    private CategoryService categoryService;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private SecondLevelCacheStatistics cacheStatistics;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private TestData testData;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.getCache().evictAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void getAllCategories_RepeatedListingIsServedFromQueryCache() {
+        testData.category();
+        testData.category();
+        assertEquals(2, categoryService.getAllCategories().size());
+
+        statistics.clear();
+        assertEquals(2, categoryService.getAllCategories().size());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    void updateCategory_InvalidatesCachedListingAndEntity() {
+        Category books = testData.category();
+        categoryService.getAllCategories();
+        categoryService.getCategory(books.getId());
+
+        CategoryDTO dto = new CategoryDTO();
+        dto.setName("E-books");
+        categoryService.updateCategory(books.getId(), dto);
+
+        assertEquals("E-books", categoryService.getAllCategories().get(0).getName());
+        assertEquals("E-books", categoryService.getCategory(books.getId()).getName());
+    }
+
+    @Test
+    void findById_ProductAndItsCategoryComeFromCacheOnceLoaded() {
+        Product saved = testData.product(5);
+        entityManagerFactory.getCache().evictAll();
+        productRepository.findById(saved.getId()).orElseThrow();
+
+        statistics.clear();
+        Product product = productRepository.findById(saved.getId()).orElseThrow();
+        assertEquals(saved.getCategory().getName(), product.getCategory().getName());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void decrementStock_EvictsCachedProduct() {
+        Long id = testData.product(5).getId();
+        assertEquals(5, productRepository.findById(id).orElseThrow().getStock());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> productRepository.decrementStock(Map.of(id, 2)));
+
+        assertEquals(3, productRepository.findById(id).orElseThrow().getStock());
+    }
+
+    @Test
+    void getStats_ReportsHitsPerRegion() {
+        Long id = testData.product(5).getId();
+        productRepository.findById(id);
+        productRepository.findById(id);
+
+        Map<String, CacheStatsDTO> stats = cacheStatistics.getStats();
+        assertTrue(stats.keySet().containsAll(
+                List.of("category", "product", "categoryListings", "default-update-timestamps-region")));
+        assertTrue(stats.get("product").getHits() >= 2);
+        assertTrue(stats.get("product").getSize() >= 1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.CartItem;
+import com.example.demo.entity.Product;
+import com.example.demo.repository.CartItemRepository;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// One-second holds and no sweep, so a hold the wheel refuses is only given back by the release for holds
+// that are already due
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.reservations.ttl-seconds=1",
+        "app.reservations.wheel.tick-ms=100",
+        "app.reservations.sweep-interval-seconds=0"
+})
+@Import({StockReservationService.class, TestData.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockHoldExpiryTest {
+    @Autowired
+    private TestData testData;
+    @Autowired
+    private StockReservationService stockReservationService;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void hold_CommittedAfterItExpiredIsReleasedAtOnce() throws InterruptedException {
+        Product candle = testData.product(5);
+        CartItem line = new CartItem();
+        line.setUser(testData.user());
+        line.setProduct(candle);
+        line.setQuantity(2);
+        Long id = new TransactionTemplate(transactionManager).execute(status -> {
+            CartItem saved = cartItemRepository.save(line);
+            stockReservationService.hold(List.of(saved), List.of());
+            // A slow transaction: by commit the hold has run out and the wheel has moved past it
+            sleep(1500);
+            return saved.getId();
+        });
+
+        for (int attempt = 0; attempt < 40 && heldQuantity(id) > 0; attempt++) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(0, heldQuantity(id));
+        assertEquals(0, stockReservationService.heldStock(candle.getId()));
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int heldQuantity(Long id) {
+        return cartItemRepository.findById(id).orElseThrow().getHeldQuantity();
+    }
+}
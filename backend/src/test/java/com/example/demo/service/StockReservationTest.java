@@ -0,0 +1,233 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CartItemRequestDTO;
+import com.example.demo.dto.CartItemResponseDTO;
+import com.example.demo.dto.PlaceOrderRequestDTO;
+import com.example.demo.entity.*;
+import com.example.demo.repository.CartItemRepository;
+import com.example.demo.support.TestData;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static com.example.demo.support.TestData.signIn;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({CartService.class, OrderService.class, ProductCache.class, StockReservationService.class, TestData.class})
+class StockReservationTest {
+    private static final Duration PAST_TTL = Duration.ofHours(1);
+
+    @Autowired
+    private TestData testData;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private StockReservationService stockReservationService;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    private User alice;
+    private User bob;
+    private Product candle;
+
+    @BeforeEach
+    void setUp() {
+        alice = testData.user();
+        bob = testData.user();
+        candle = testData.product(5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void addItemToCart_HoldsStockAgainstOtherCarts() {
+        signIn(alice);
+        add(3);
+        assertEquals(3, held());
+        assertEquals(2, stockReservationService.availableToPromise(candle));
+
+        signIn(bob);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> add(3));
+        assertEquals("Requested quantity exceeds available stock.", ex.getMessage());
+        add(2);
+        assertEquals(0, stockReservationService.availableToPromise(candle));
+        // Holds live on the cart rows; the product row is untouched
+        assertEquals(5, reload(candle).getStock());
+        assertEquals(3, lineOf(alice).getHeldQuantity());
+    }
+
+    @Test
+    void updateAndRemove_MoveTheHoldWithTheLine() {
+        signIn(alice);
+        add(3);
+        cartService.updateCartItem(candle.getId(), 1);
+        assertEquals(1, held());
+
+        cartService.updateCartItem(candle.getId(), 5);
+        assertEquals(5, held());
+
+        cartService.removeCartItem(candle.getId());
+        assertEquals(0, held());
+        assertTrue(cartItemRepository.findByUser(alice).isEmpty());
+    }
+
+    @Test
+    void getCart_OwnHoldCountsAsAvailableToTheLine() {
+        signIn(alice);
+        add(3);
+        CartItemResponseDTO line = cartService.getCart().getItems().get(0);
+        assertEquals(5, line.getStock());
+        assertFalse(line.isOutOfStock());
+
+        // Bob's line predates holds, so only the two units nobody holds are open to it
+        CartItem unheld = new CartItem();
+        unheld.setUser(bob);
+        unheld.setProduct(candle);
+        unheld.setQuantity(3);
+        entityManager.persist(unheld);
+        signIn(bob);
+        line = cartService.getCart().getItems().get(0);
+        assertEquals(2, line.getStock());
+        assertTrue(line.isOutOfStock());
+    }
+
+    @Test
+    void placeOrder_ConvertsTheHoldIntoTheDeduction() {
+        signIn(bob);
+        add(2);
+        signIn(alice);
+        add(3);
+
+        orderService.placeOrder(order());
+
+        assertEquals(2, reload(candle).getStock());
+        assertEquals(2, held());
+        assertTrue(cartItemRepository.findByUser(alice).isEmpty());
+    }
+
+    @Test
+    void placeOrder_CannotTakeStockHeldByAnotherCart() {
+        signIn(bob);
+        add(4);
+        CartItem unheld = new CartItem();
+        unheld.setUser(alice);
+        unheld.setProduct(candle);
+        unheld.setQuantity(2);
+        entityManager.persist(unheld);
+        signIn(alice);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> orderService.placeOrder(order()));
+        assertEquals("Not enough stock for product: " + candle.getName(), ex.getMessage());
+    }
+
+    @Test
+    void releaseExpired_GivesBackOnlyHoldsPastTheirExpiry() {
+        signIn(alice);
+        add(3);
+        signIn(bob);
+        add(1);
+        List<Long> ids = List.of(lineOf(alice).getId(), lineOf(bob).getId());
+
+        assertEquals(0, stockReservationService.releaseExpired(ids, Instant.now()));
+        assertEquals(4, held());
+
+        assertEquals(2, stockReservationService.releaseExpired(ids, Instant.now().plus(PAST_TTL)));
+        assertEquals(0, held());
+        // The lines stay in the carts, only without a hold
+        CartItem line = lineOf(alice);
+        assertEquals(3, line.getQuantity());
+        assertEquals(0, line.getHeldQuantity());
+        assertNull(line.getHoldExpiresAt());
+    }
+
+    @Test
+    void sweepExpired_FindsHoldsWithoutTheWheel() {
+        signIn(alice);
+        add(3);
+
+        assertEquals(0, stockReservationService.sweepExpired(Instant.now()));
+        assertEquals(1, stockReservationService.sweepExpired(Instant.now().plus(PAST_TTL)));
+        assertEquals(0, held());
+    }
+
+    @Test
+    void placeOrder_AfterHoldExpiredStillSucceedsWhileStockLasts() {
+        signIn(alice);
+        add(3);
+        stockReservationService.sweepExpired(Instant.now().plus(PAST_TTL));
+
+        orderService.placeOrder(order());
+
+        assertEquals(2, reload(candle).getStock());
+        assertEquals(0, held());
+    }
+
+    @Test
+    void reloadHeld_CountsHoldsTakenElsewhere() {
+        // A hold written by another instance reaches this one only through the rows
+        CartItem line = new CartItem();
+        line.setUser(bob);
+        line.setProduct(candle);
+        line.setQuantity(4);
+        line.setHeldQuantity(4);
+        line.setHoldExpiresAt(Instant.now().plus(PAST_TTL));
+        entityManager.persist(line);
+        assertEquals(0, held());
+
+        stockReservationService.reloadHeld();
+
+        assertEquals(4, held());
+        signIn(alice);
+        assertThrows(IllegalArgumentException.class, () -> add(2));
+    }
+
+    private void add(int quantity) {
+        CartItemRequestDTO request = new CartItemRequestDTO();
+        request.setProductId(candle.getId());
+        request.setQuantity(quantity);
+        cartService.addItemToCart(request);
+    }
+
+    private PlaceOrderRequestDTO order() {
+        PlaceOrderRequestDTO request = new PlaceOrderRequestDTO();
+        request.setShippingAddress("1 Hold Street");
+        request.setProductIds(List.of(candle.getId()));
+        request.setTotalAmount(BigDecimal.TEN);
+        return request;
+    }
+
+    private int held() {
+        return stockReservationService.heldStock(candle.getId());
+    }
+
+    // Stock changes through plain JDBC, so read it back from the database
+    private Product reload(Product product) {
+        entityManager.flush();
+        entityManager.clear();
+        return entityManager.find(Product.class, product.getId());
+    }
+
+    private CartItem lineOf(User user) {
+        entityManager.flush();
+        entityManager.clear();
+        return cartItemRepository.findByUser(user).get(0);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CartDTO;
+import com.example.demo.dto.CartItemResponseDTO;
+import com.example.demo.dto.CartOperationDTO;
+import com.example.demo.dto.PlaceOrderRequestDTO;
+import com.example.demo.entity.*;
+import com.example.demo.repository.*;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static com.example.demo.support.QueryBudget.assertAtMost;
+import static com.example.demo.support.TestData.signIn;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The background flusher is slowed to an hour, so each test decides when pending carts are written
+@SpringBootTest(properties = {
+        "app.cart.write-behind.enabled=true",
+        "app.cart.write-behind.flush-interval-ms=3600000"
+})
+@ActiveProfiles("h2")
+@Import(TestData.class)
+class WriteBehindCartTest {
+    @Autowired
+    private TestData testData;
+    @Autowired
+    private WriteBehindCartService writeBehindCartService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private StockReservationService stockReservationService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void cartChanges_StayInMemoryUntilFlushed() {
+        Product candle = testData.product(10);
+        User alice = testData.user();
+        signIn(alice);
+        writeBehindCartService.addItemToCart(candle.getId(), 2);
+        writeBehindCartService.updateCartItem(candle.getId(), 4);
+
+        assertTrue(cartItemRepository.findByUser(alice).isEmpty());
+        CartItemResponseDTO line = writeBehindCartService.getCart().getItems().get(0);
+        assertNull(line.getId());
+        assertEquals(4, line.getQuantity());
+
+        writeBehindCartService.flushPending();
+
+        List<CartItem> rows = cartItemRepository.findByUser(alice);
+        assertEquals(1, rows.size());
+        assertEquals(4, rows.get(0).getQuantity());
+        assertEquals(4, rows.get(0).getHeldQuantity());
+        assertEquals(4, held(candle));
+        assertEquals(rows.get(0).getId(), writeBehindCartService.getCart().getItems().get(0).getId());
+    }
+
+    @Test
+    void cartChanges_IssueNoStatementsOnceTheCartIsLoaded() {
+        Product candle = testData.product(10);
+        Product soap = testData.product(10);
+        signIn(testData.user());
+        writeBehindCartService.getCart();
+        productCache.get(candle.getId());
+        productCache.get(soap.getId());
+
+        CartDTO cart = assertAtMost(0, () -> {
+            writeBehindCartService.addItemToCart(candle.getId(), 1);
+            writeBehindCartService.addItemToCart(candle.getId(), 1);
+            return writeBehindCartService.applyOperations(List.of(
+                    operation(CartOperationDTO.Op.SET, candle.getId(), 3),
+                    operation(CartOperationDTO.Op.ADD, soap.getId(), 2)));
+        });
+        assertEquals(5, cart.getTotalQuantity());
+    }
+
+    @Test
+    void removeCartItem_ReleasesTheHoldWhenFlushed() {
+        Product candle = testData.product(10);
+        User alice = testData.user();
+        signIn(alice);
+        writeBehindCartService.addItemToCart(candle.getId(), 3);
+        writeBehindCartService.flushPending();
+        assertEquals(3, held(candle));
+
+        writeBehindCartService.removeCartItem(candle.getId());
+        assertEquals(3, held(candle));
+        writeBehindCartService.flushPending();
+
+        assertEquals(0, held(candle));
+        assertTrue(cartItemRepository.findByUser(alice).isEmpty());
+    }
+
+    @Test
+    void flushPending_DropsLinesForDeletedProductsWithoutHoldingBackOtherCarts() {
+        writeBehindCartService.flushPending();
+        Product candle = testData.product(10);
+        Product withdrawn = testData.product(10);
+        User alice = testData.user();
+        signIn(alice);
+        writeBehindCartService.addItemToCart(candle.getId(), 1);
+        writeBehindCartService.addItemToCart(withdrawn.getId(), 1);
+        User bob = testData.user();
+        signIn(bob);
+        writeBehindCartService.addItemToCart(candle.getId(), 2);
+        productRepository.deleteById(withdrawn.getId());
+
+        assertEquals(2, writeBehindCartService.flushPending());
+
+        assertEquals(0, writeBehindCartService.getPendingCount());
+        List<CartItem> aliceRows = cartItemRepository.findByUser(alice);
+        assertEquals(1, aliceRows.size());
+        assertEquals(candle.getId(), aliceRows.get(0).getProduct().getId());
+        assertEquals(1, cartItemRepository.findByUser(bob).size());
+        assertEquals(3, held(candle));
+    }
+
+    @Test
+    void addItemToCart_RejectsStockHeldByAnotherCart() {
+        Product candle = testData.product(5);
+        signIn(testData.user());
+        writeBehindCartService.addItemToCart(candle.getId(), 3);
+        writeBehindCartService.flushPending();
+
+        signIn(testData.user());
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> writeBehindCartService.addItemToCart(candle.getId(), 3));
+        assertEquals("Requested quantity exceeds available stock.", ex.getMessage());
+        writeBehindCartService.addItemToCart(candle.getId(), 2);
+        assertEquals(2, writeBehindCartService.getCart().getTotalQuantity());
+    }
+
+    @Test
+    void addItemToCart_RejectsQuantitiesPastTheLineLimit() {
+        Product candle = testData.product(Integer.MAX_VALUE);
+        signIn(testData.user());
+        writeBehindCartService.addItemToCart(candle.getId(), CartService.MAX_LINE_QUANTITY);
+
+        assertThrows(IllegalArgumentException.class, () -> writeBehindCartService.addItemToCart(candle.getId(), Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> writeBehindCartService.addItemToCart(candle.getId(), 1));
+        assertThrows(IllegalArgumentException.class, () -> writeBehindCartService.updateCartItem(candle.getId(), 0));
+        assertEquals(CartService.MAX_LINE_QUANTITY, writeBehindCartService.getCart().getTotalQuantity());
+    }
+
+    @Test
+    void releasedHolds_NoLongerCountForTheStoredCart() {
+        Product candle = testData.product(5);
+        User alice = testData.user();
+        signIn(alice);
+        writeBehindCartService.addItemToCart(candle.getId(), 3);
+        writeBehindCartService.flushPending();
+        assertEquals(5, writeBehindCartService.getCart().getItems().get(0).getStock());
+
+        List<Long> lineIds = cartItemRepository.findByUser(alice).stream().map(CartItem::getId).toList();
+        assertEquals(1, stockReservationService.releaseExpired(lineIds, Instant.now().plus(Duration.ofHours(1))));
+        signIn(testData.user());
+        writeBehindCartService.addItemToCart(candle.getId(), 4);
+        writeBehindCartService.flushPending();
+
+        // The three units are no longer held for alice, and only one is left
+        signIn(alice);
+        assertEquals(1, writeBehindCartService.getCart().getItems().get(0).getStock());
+        assertThrows(IllegalArgumentException.class, () -> writeBehindCartService.updateCartItem(candle.getId(), 4));
+    }
+
+    @Test
+    void placeOrder_WritesPendingChangesFirst() {
+        Product candle = testData.product(5);
+        User alice = testData.user();
+        signIn(alice);
+        writeBehindCartService.addItemToCart(candle.getId(), 2);
+        assertTrue(writeBehindCartService.getPendingCount() > 0);
+
+        PlaceOrderRequestDTO request = new PlaceOrderRequestDTO();
+        request.setShippingAddress("1 Buffer Street");
+        request.setProductIds(List.of(candle.getId()));
+        request.setTotalAmount(new BigDecimal("20.00"));
+        orderService.placeOrder(request);
+
+        Product after = productRepository.findById(candle.getId()).orElseThrow();
+        assertEquals(3, after.getStock());
+        assertEquals(0, held(candle));
+        assertTrue(cartItemRepository.findByUser(alice).isEmpty());
+        assertTrue(writeBehindCartService.getCart().getItems().isEmpty());
+    }
+
+    private int held(Product product) {
+        return stockReservationService.heldStock(product.getId());
+    }
+
+    private static CartOperationDTO operation(CartOperationDTO.Op op, Long productId, int quantity) {
+        CartOperationDTO operation = new CartOperationDTO();
+        operation.setOp(op);
+        operation.setProductId(productId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.demo.support;
+
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.function.ThrowingSupplier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Assertions on how many SQL statements a unit of work issues, so N+1 regressions fail the build.
+ * Counts statements prepared by Hibernate on the calling thread, which covers MockMvc requests.
+ * Requires the "h2" test profile (or the SqlStatementCounter inspector configured some other way).
+ *
+ * <pre>
+ * QueryBudget.assertAtMost(2, () -> mockMvc.perform(get("/api/cart")).andExpect(status().isOk()));
+ * </pre>
+ */
+public final class QueryBudget {
+    private QueryBudget() {
+    }
+
+    public static void assertAtMost(int budget, Executable work) {
+        assertAtMost(budget, () -> {
+            work.execute();
+            return null;
+        });
+    }
+
+    public static <T> T assertAtMost(int budget, ThrowingSupplier<T> work) {
+        SqlStatementCounter.reset();
+        T result = run(work);
+        List<String> statements = SqlStatementCounter.statements();
+        if (statements.size() > budget) {
+            fail(describe("Expected at most " + budget, statements));
+        }
+        return result;
+    }
+
+    public static void assertExactly(int expected, Executable work) {
+        SqlStatementCounter.reset();
+        run(() -> {
+            work.execute();
+            return null;
+        });
+        List<String> statements = SqlStatementCounter.statements();
+        if (statements.size() != expected) {
+            fail(describe("Expected exactly " + expected, statements));
+        }
+    }
+
+    private static <T> T run(ThrowingSupplier<T> work) {
+        try {
+            return work.get();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static String describe(String expectation, List<String> statements) {
+        StringBuilder message = new StringBuilder(expectation)
+                .append(" SQL statements but got ").append(statements.size()).append(':');
+        for (int i = 0; i < statements.size(); i++) {
+            message.append(System.lineSeparator()).append("  ").append(i + 1).append(". ").append(statements.get(i));
+        }
+        return message.toString();
+    }
+}
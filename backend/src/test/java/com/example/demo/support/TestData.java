@@ -0,0 +1,97 @@
+package com.example.demo.support;
+
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.User;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+
+/**
+ * Saved users and products with unique names, for tests that share one database between test methods.
+ * Add it to the context with {@code @Import(TestData.class)}.
+ *
+ * <pre>
+ * User alice = testData.user();
+ * Product candle = testData.product(10);
+ * TestData.signIn(alice);
+ * </pre>
+ */
+public class TestData {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final UserRepository userRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+
+    public TestData(UserRepository userRepository, CategoryRepository categoryRepository, ProductRepository productRepository) {
+        this.userRepository = userRepository;
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+    }
+
+    /** A number no other caller in this JVM gets, for names and emails that must not collide. */
+    public static int unique() {
+        return SEQUENCE.incrementAndGet();
+    }
+
+    public User user() {
+        User user = new User();
+        user.setEmail("user" + unique() + "@example.com");
+        user.setPassword("x");
+        user.setRole("USER");
+        user.setName("Test User");
+        user.setPhone("0123456789");
+        return userRepository.save(user);
+    }
+
+    public Category category() {
+        Category category = new Category();
+        category.setName("Category " + unique());
+        return categoryRepository.save(category);
+    }
+
+    /** A product priced at 10 in a category of its own. */
+    public Product product(int stock) {
+        return product("Product " + unique(), BigDecimal.TEN, stock);
+    }
+
+    public Product product(String name, BigDecimal price, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        product.setStock(stock);
+        product.setCategory(category());
+        return productRepository.save(product);
+    }
+
+    /** Makes the user the signed-in principal on this thread, as the JWT filter would. */
+    public static void signIn(User user) {
+        List<GrantedAuthority> authorities = authorities(user);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(user.getId(), user.getEmail(), authorities), null, authorities));
+    }
+
+    /** Sends a MockMvc request as the user. */
+    public static RequestPostProcessor as(User user) {
+        List<GrantedAuthority> authorities = authorities(user);
+        return authentication(new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(user.getId(), user.getEmail(), authorities), null, authorities));
+    }
+
+    private static List<GrantedAuthority> authorities(User user) {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + user.getRole()));
+    }
+}
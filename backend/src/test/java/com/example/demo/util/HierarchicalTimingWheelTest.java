@@ -0,0 +1,75 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    @Test
+    void advance_ReturnsItemsOnceTheirTickHasPassed() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 8, 1000);
+        assertTrue(wheel.schedule("a", 1015));
+        assertTrue(wheel.schedule("b", 1030));
+
+        assertEquals(List.of(), wheel.advance(1015));
+        assertEquals(List.of("a"), wheel.advance(1020));
+        assertEquals(List.of(), wheel.advance(1039));
+        assertEquals(List.of("b"), wheel.advance(1040));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_AlreadyDueIsRefused() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 8, 1000);
+        wheel.advance(1100);
+
+        assertFalse(wheel.schedule("late", 1099));
+        assertTrue(wheel.schedule("now", 1100));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void advance_FarOffItemsCascadeThroughOverflowLevels() {
+        // Level spans: 80 ms, 640 ms, 5120 ms, so these land two and three levels up
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 8, 0);
+        wheel.schedule("hour", 3_600_000);
+        wheel.schedule("second", 1_000);
+        wheel.schedule("level-boundary", 640);
+
+        assertEquals(List.of(), wheel.advance(639));
+        assertEquals(List.of("level-boundary"), wheel.advance(650));
+        assertEquals(List.of(), wheel.advance(1_000));
+        assertEquals(List.of("second"), wheel.advance(1_010));
+        assertEquals(List.of(), wheel.advance(3_599_999));
+        assertEquals(List.of("hour"), wheel.advance(3_600_010));
+    }
+
+    @Test
+    void advance_NothingEarlyAndAtMostOneTickLate() {
+        long tick = 10;
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(tick, 16, 0);
+        Random random = new Random(42);
+        List<Long> expiries = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            long expiry = random.nextLong(200_000);
+            expiries.add(expiry);
+            assertTrue(wheel.schedule(expiry, expiry));
+        }
+
+        int fired = 0;
+        for (long now = 0; now <= 200_000 + tick; now += 7) {
+            for (long expiry : wheel.advance(now)) {
+                assertTrue(expiry < now, () -> "fired early: " + expiry);
+                assertTrue(now - expiry <= tick + 7, () -> "fired late: " + expiry);
+                fired++;
+            }
+        }
+        assertEquals(expiries.size(), fired);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -1,6 +1,7 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpHeaders } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { EMPTY, Observable } from 'rxjs';
+import { expand, reduce } from 'rxjs/operators';
 import { environment } from '../environment';
 
 export interface Category {
@@ -35,6 +36,12 @@ export interface Order {
   totalAmount: number;
 }
 
+// One page of orders; nextCursor is null on the last page
+export interface OrderPage {
+  items: Order[];
+  nextCursor: string | null;
+}
+
 export interface OrderItem {
   id: number;
   productName: string;
@@ -119,7 +126,15 @@ export class AdminService {
 
   // Order Management
   getAllOrders(): Observable<Order[]> {
-    return this.http.get<Order[]>(`${this.apiUrl}/orders/all`, { headers: this.getAuthHeaders() });
+    // Orders come in bounded pages, newest first; follow the cursor to the last one
+    const page = (cursor?: string) => this.http.get<OrderPage>(`${this.apiUrl}/orders/all`, {
+      headers: this.getAuthHeaders(),
+      params: cursor ? { limit: 100, cursor } : { limit: 100 }
+    });
+    return page().pipe(
+      expand(p => p.nextCursor ? page(p.nextCursor) : EMPTY),
+      reduce((orders, p) => orders.concat(p.items), [] as Order[])
+    );
   }
 
   getOrdersByStatus(status: string): Observable<Order[]> {
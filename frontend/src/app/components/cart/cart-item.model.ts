@@ -5,4 +5,22 @@ export interface CartItem {
   productImage: string;
   productPrice: number;
   quantity: number;
-} 
\ No newline at end of file
+  stock: number;
+  lineTotal: number;
+  outOfStock: boolean;
+}
+
+// Totals are computed by the backend
+export interface Cart {
+  items: CartItem[];
+  subtotal: number;
+  totalQuantity: number;
+  hasOutOfStockItems: boolean;
+}
+
+// One step of PATCH /api/cart; quantity is ignored for REMOVE
+export interface CartOperation {
+  op: 'ADD' | 'SET' | 'REMOVE';
+  productId: number;
+  quantity?: number;
+}
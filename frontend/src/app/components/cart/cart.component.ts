@@ -18,6 +18,7 @@ export class CartComponent implements OnInit {
   cartItems: CartItem[] = [];
   loading = true;
   subtotal = 0;
+  hasOutOfStockItems = false;
   environment = environment;
   shippingFee = 0;
 
@@ -40,9 +41,10 @@ export class CartComponent implements OnInit {
   }
 
   ngOnInit() {
-    this.cartService.cartItems$.subscribe(items => {
-      this.cartItems = items;
-      this.subtotal = items.reduce((sum, item) => sum + item.productPrice * item.quantity, 0);
+    this.cartService.cart$.subscribe(cart => {
+      this.cartItems = cart?.items ?? [];
+      this.subtotal = cart?.subtotal ?? 0;
+      this.hasOutOfStockItems = cart?.hasOutOfStockItems ?? false;
       this.loading = false;
     });
     this.cartService.fetchCartItems();
@@ -50,9 +52,7 @@ export class CartComponent implements OnInit {
 
   changeQty(item: CartItem, newQty: number) {
     if (newQty < 1) return;
-    this.cartService.updateCartItem(item.productId, newQty).subscribe({
-      next: () => this.cartService.fetchCartItems()
-    });
+    this.cartService.applyOperations([{ op: 'SET', productId: item.productId, quantity: newQty }]).subscribe();
   }
 
   onQtyBlur(item: CartItem) {
@@ -61,9 +61,7 @@ export class CartComponent implements OnInit {
   }
 
   removeItem(item: CartItem) {
-    this.cartService.removeCartItem(item.productId).subscribe({
-      next: () => this.cartService.fetchCartItems()
-    });
+    this.cartService.applyOperations([{ op: 'REMOVE', productId: item.productId }]).subscribe();
   }
 
   get totalAmount(): number {
@@ -71,7 +69,7 @@ export class CartComponent implements OnInit {
   }
 
   checkout() {
-    if (this.addressForm.invalid) return;
+    if (this.addressForm.invalid || this.hasOutOfStockItems) return;
     const productIds = this.cartItems.map(item => item.productId);
     const shippingFee = this.shippingFee;
     const totalAmount = this.totalAmount;
@@ -82,19 +80,22 @@ export class CartComponent implements OnInit {
       shippingFee,
       totalAmount
     };
+    const headers = {
+      'Content-Type': 'application/json',
+      'Authorization': `Bearer ${localStorage.getItem('token') || ''}`
+    };
+    // Servers with the checkout queue enabled answer 202 with a ticket; others place the order right away
     fetch(this.environment.backendUrl + '/api/orders/place', {
       method: 'POST',
-      headers: {
-        'Content-Type': 'application/json',
-        'Authorization': `Bearer ${localStorage.getItem('token') || ''}`
-      },
+      headers: { ...headers, 'Prefer': 'respond-async' },
       body: JSON.stringify(body)
     })
       .then(res => {
         if (!res.ok) throw new Error('Order failed');
-        return res.json();
+        return res.status === 202 ? res.json().then(ticket => this.waitForOrder(ticket.ticketId, headers)) : res.json();
       })
       .then(() => {
+        this.cartService.cart$.next(null);
         this.cartService.cartItems$.next([]);
         this.cartService.cartCount$.next(0);
         this.router.navigate(['/orders/latest']);
@@ -104,6 +105,18 @@ export class CartComponent implements OnInit {
       });
   }
 
+  // Polls the order ticket until the queued order has been placed or refused
+  private async waitForOrder(ticketId: string, headers: Record<string, string>): Promise<any> {
+    for (;;) {
+      const res = await fetch(this.environment.backendUrl + '/api/orders/tickets/' + ticketId, { headers });
+      if (!res.ok) throw new Error('Order failed');
+      const ticket = await res.json();
+      if (ticket.status === 'PLACED') return ticket;
+      if (ticket.status === 'FAILED') throw new Error(ticket.message || 'Order failed');
+      await new Promise(resolve => setTimeout(resolve, 250));
+    }
+  }
+
   getImageUrl(item: CartItem): string {
     return this.environment.backendUrl + item.productImage;
   }
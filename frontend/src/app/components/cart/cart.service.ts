@@ -1,30 +1,41 @@
 import { Injectable } from '@angular/core';
-import { BehaviorSubject, Observable } from 'rxjs';
+import { BehaviorSubject, Observable, tap } from 'rxjs';
 import { HttpClient } from '@angular/common/http';
 import { environment } from '../../environment';
-import { CartItem } from './cart-item.model';
+import { Cart, CartItem, CartOperation } from './cart-item.model';
 
 @Injectable({ providedIn: 'root' })
 export class CartService {
   cartCount$ = new BehaviorSubject<number>(0);
   cartItems$ = new BehaviorSubject<CartItem[]>([]);
+  cart$ = new BehaviorSubject<Cart | null>(null);
 
   constructor(private http: HttpClient) {}
 
   fetchCartItems() {
-    this.http.get<CartItem[]>(environment.backendUrl + '/api/cart').subscribe({
-      next: items => {
-        this.cartItems$.next(items);
-        const totalCount = items.reduce((sum, item) => sum + item.quantity, 0);
-        this.cartCount$.next(totalCount);
-      },
+    this.http.get<Cart>(environment.backendUrl + '/api/cart').subscribe({
+      next: cart => this.publish(cart),
       error: () => {
+        this.cart$.next(null);
         this.cartItems$.next([]);
         this.cartCount$.next(0);
       }
     });
   }
 
+  // Applies several changes in one request; the response is the updated cart, so no refetch is needed
+  applyOperations(operations: CartOperation[]): Observable<Cart> {
+    return this.http.patch<Cart>(environment.backendUrl + '/api/cart', operations).pipe(
+      tap(cart => this.publish(cart))
+    );
+  }
+
+  private publish(cart: Cart) {
+    this.cart$.next(cart);
+    this.cartItems$.next(cart.items);
+    this.cartCount$.next(cart.totalQuantity);
+  }
+
   updateCartItem(productId: number, quantity: number) {
     return this.http.put(environment.backendUrl + '/api/cart/update', { productId, quantity });
   }
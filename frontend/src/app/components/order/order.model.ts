@@ -20,4 +20,10 @@ export interface Order {
   phoneNumber: string;
   paymentMethod: string;
   items: OrderItem[];
-} 
\ No newline at end of file
+} 
+
+// One page of order history; nextCursor is null on the last page
+export interface OrderPage {
+  items: Order[];
+  nextCursor: string | null;
+}
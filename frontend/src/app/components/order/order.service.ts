@@ -1,8 +1,9 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpHeaders } from '@angular/common/http';
 import { environment } from '../../environment';
-import { Observable } from 'rxjs';
-import { Order } from './order.model';
+import { EMPTY, Observable } from 'rxjs';
+import { expand, reduce } from 'rxjs/operators';
+import { Order, OrderPage } from './order.model';
 import { AuthService } from '../../auth/auth.service';
 
 @Injectable({ providedIn: 'root' })
@@ -13,7 +14,14 @@ export class OrderService {
     const token = this.auth.getToken();
     if (!token) throw new Error('Not authenticated');
     const headers = new HttpHeaders({ 'Authorization': `Bearer ${token}` });
-    return this.http.get<Order[]>(`${environment.backendUrl}/api/orders/my-orders`, { headers });
+    const url = `${environment.backendUrl}/api/orders/my-orders`;
+    // The history comes in bounded pages, newest first; follow the cursor to the last one
+    const page = (cursor?: string) =>
+      this.http.get<OrderPage>(url, { headers, params: cursor ? { limit: 100, cursor } : { limit: 100 } });
+    return page().pipe(
+      expand(p => p.nextCursor ? page(p.nextCursor) : EMPTY),
+      reduce((orders, p) => orders.concat(p.items), [] as Order[])
+    );
   }
 
   cancelOrder(orderId: number): Observable<any> {